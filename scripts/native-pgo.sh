@@ -0,0 +1,73 @@
+#!/usr/bin/env bash
+
+# Builds a native binary with profile guided optimization (PGO).
+# An instrumented binary is built first and run on a representative conversion workload,
+# the collected profile is then used for the optimized build, target/sariftool-VERSION.
+# PGO requires Oracle GraalVM, the community edition does not support it.
+
+set -euo pipefail
+
+if [[ -z "${1:-}" ]]; then
+    echo "Run the script with version: native-pgo.sh CURRENT_VERSION_OF_JAR"
+    echo "Example: scripts/native-pgo.sh '0.0.1-SNAPSHOT'"
+    exit 1
+fi
+
+VERSION="$1"
+INSTRUMENTED="target/sariftool-${VERSION}-instrumented"
+WORKDIR="target/pgo"
+PROFILE="${WORKDIR}/default.iprof"
+ROUNDS="${PGO_ROUNDS:-20}"
+
+build_instrumented() {
+    ./mvnw -B -Pfatjar -DskipTests clean package
+    ./mvnw -B -Dnative -DpgoInstrument -DskipTests package
+}
+
+# The workload should look like production use, many short conversions of typical SARIF files
+run_workload() {
+    rm -rf "${WORKDIR}"
+    mkdir -p "${WORKDIR}/sources" "${WORKDIR}/output"
+    cp src/test/resources/*.sarif "${WORKDIR}/sources/"
+
+    local binary
+    binary="$(realpath "${INSTRUMENTED}")"
+    (
+        cd "${WORKDIR}"
+        for _ in $(seq "${ROUNDS}"); do
+            for sarif in sources/*.sarif; do
+                "${binary}" convert -s "${sarif}" -o output >/dev/null 2>&1 || true
+            done
+            "${binary}" convert -s sources -o output --threads=2 >/dev/null 2>&1 || true
+            "${binary}" convert -s sources -o output --merge --compact --gzip >/dev/null 2>&1 || true
+            "${binary}" convert -s sources -o output --metrics=metrics.json --metrics-prometheus=metrics.prom \
+                >/dev/null 2>&1 || true
+        done
+    )
+
+    if [[ ! -f "${PROFILE}" ]]; then
+        echo "No profile written to ${PROFILE}, is this Oracle GraalVM?"
+        exit 1
+    fi
+}
+
+build_optimized() {
+    ./mvnw -B -Dnative -Dpgo="${PROFILE}" -DskipTests package
+}
+
+# The metrics records are serialized by reflection, without their registration the native binary writes '{}'
+smoke_test() {
+    local metrics="${WORKDIR}/smoke-metrics.json"
+    "target/sariftool-${VERSION}" convert -s src/test/resources/exampleWithTestDir.sarif -o "${WORKDIR}/output" \
+        --metrics="${metrics}"
+    if ! grep -q '"perFile"' "${metrics}"; then
+        echo "Native binary wrote no metrics to ${metrics}, is ConversionMetrics in reflect-config.json?"
+        exit 1
+    fi
+}
+
+build_instrumented
+run_workload
+build_optimized
+smoke_test
+echo "Built target/sariftool-${VERSION} with profile ${PROFILE}"
@@ -0,0 +1,87 @@
+#!/usr/bin/env bash
+
+# Compares short conversions for the available launch modes: the jar on a plain JVM, the jar with an
+# AppCDS archive, and the native binary. For each it prints the mean time to first output (the first
+# log line), the mean wall time and the peak RSS.
+# Build the jar and archive first with './mvnw -Pfatjar -Dappcds package', and the native binary with
+# './mvnw -Dnative package'. Without a built archive, one is created from a single conversion.
+# Peak RSS needs GNU time in /usr/bin/time.
+
+set -euo pipefail
+
+if [[ -z "${1:-}" ]]; then
+    echo "Run the script with version: startup-benchmark.sh CURRENT_VERSION_OF_JAR [SARIF_FILE] [RUNS]"
+    echo "Example: scripts/startup-benchmark.sh '0.0.1-SNAPSHOT'"
+    exit 1
+fi
+
+VERSION="$1"
+SARIF="${2:-src/test/resources/exampleWithTestDir.sarif}"
+RUNS="${3:-10}"
+JAR="target/sariftool-${VERSION}-jar-with-dependencies.jar"
+NATIVE="target/sariftool-${VERSION}"
+WORKDIR="target/startup-benchmark"
+CDS_ARCHIVE="target/sariftool-${VERSION}.jsa"
+
+mkdir -p "${WORKDIR}/output"
+
+now_ms() {
+    echo $(($(date +%s%N) / 1000000))
+}
+
+# Prints the ms to the first output line and to the end of one conversion
+run_once() {
+    local start first end
+    start="$(now_ms)"
+    first="$("$@" convert -s "${SARIF}" -o "${WORKDIR}/output" 2>&1 | {
+        IFS= read -r _ || true
+        now_ms
+        cat >/dev/null
+    })"
+    end="$(now_ms)"
+    echo "$((first - start)) $((end - start))"
+}
+
+peak_rss() {
+    if [[ -x /usr/bin/time ]]; then
+        /usr/bin/time -f '%M' "$@" convert -s "${SARIF}" -o "${WORKDIR}/output" 2>&1 >/dev/null | tail -1
+    else
+        echo "n/a"
+    fi
+}
+
+measure() {
+    local name="$1"
+    shift
+    local total_first=0 total=0
+    for _ in $(seq "${RUNS}"); do
+        local first all
+        read -r first all < <(run_once "$@")
+        total_first=$((total_first + first))
+        total=$((total + all))
+    done
+    printf '%-10s %14s %10s %14s\n' "${name}" "$((total_first / RUNS))" "$((total / RUNS))" "$(peak_rss "$@")"
+}
+
+create_cds_archive() {
+    java -XX:ArchiveClassesAtExit="${CDS_ARCHIVE}" -Xlog:cds=off -jar "${JAR}" convert -s "${SARIF}" \
+        -o "${WORKDIR}/output" >/dev/null 2>&1
+}
+
+printf '%-10s %14s %10s %14s\n' "mode" "first out ms" "mean ms" "max rss KB"
+
+if [[ -f "${JAR}" ]]; then
+    measure "jvm" java -jar "${JAR}"
+    if [[ ! -f "${CDS_ARCHIVE}" ]]; then
+        create_cds_archive
+    fi
+    measure "appcds" java -XX:SharedArchiveFile="${CDS_ARCHIVE}" -Xshare:auto -jar "${JAR}"
+else
+    echo "No jar at ${JAR}, skipping jvm and appcds"
+fi
+
+if [[ -x "${NATIVE}" ]]; then
+    measure "native" "${NATIVE}"
+else
+    echo "No native binary at ${NATIVE}, skipping native"
+fi
@@ -0,0 +1,115 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import se.janderssonse.sariftool.SarifParser;
+import se.janderssonse.sariftool.mapper.SonarMapper;
+import se.janderssonse.sariftool.model.sonar.Issues;
+import se.janderssonse.sariftool.util.JsonWrapper;
+import se.janderssonse.sariftool.util.Util;
+
+/**
+ * Measures the conversion stages separately on a generated SARIF log. Run through the jmh
+ * profile, which adds the gc profiler for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ConversionBenchmark {
+
+    private static final Logger APP_LOGGER = Logger.getLogger("se.janderssonse.sariftool");
+    private static final List<String> EXCLUDE_PATHS = List.of("src/test", "glob:build/generated/**");
+
+    @Param({ "100", "1000" })
+    private int rules;
+
+    @Param({ "1000", "10000" })
+    private int results;
+
+    @Param({ "1", "3" })
+    private int locations;
+
+    private Path workDir;
+    private Path sarifFile;
+    private Path targetFile;
+    private JsonNode sarifNode;
+    private SarifParser parser;
+    private Issues issues;
+
+    @Setup
+    public void setUp() throws IOException {
+        APP_LOGGER.setLevel(Level.WARNING);
+
+        workDir = Files.createTempDirectory("sariftool-jmh");
+        sarifFile = SarifGenerator.write(workDir.resolve("generated.sarif"), rules, results, locations);
+        targetFile = workDir.resolve("generated.json");
+        sarifNode = JsonWrapper.toNode(sarifFile);
+        parser = new SarifParser(sarifFile);
+        if (!parser.validated()) {
+            throw new IllegalStateException("Generated SARIF file did not validate: " + sarifFile);
+        }
+        issues = new Issues(new SonarMapper(parser).toIssues(EXCLUDE_PATHS).toList());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(workDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public SarifParser parse() {
+        return new SarifParser(sarifFile);
+    }
+
+    @Benchmark
+    public boolean validate() {
+        return Util.schemaValidate(sarifNode, sarifFile);
+    }
+
+    @Benchmark
+    public void map(final Blackhole blackhole) {
+        new SonarMapper(parser).toIssues(EXCLUDE_PATHS).forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public void write() {
+        JsonWrapper.toFile(targetFile, issues);
+    }
+
+    @Benchmark
+    public void mapAndWrite() {
+        new SonarMapper(parser).map(targetFile, EXCLUDE_PATHS);
+    }
+}
@@ -0,0 +1,129 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes a schema valid, CodeQL like SARIF log with the given number of rules, results and
+ * locations per result. The output is deterministic for the same input.
+ */
+public final class SarifGenerator {
+
+    private static final String SCHEMA = "https://raw.githubusercontent.com/oasis-tcs/sarif-spec/master/Schemata/sarif-schema-2.1.0.json";
+    private static final String[] LEVELS = { "error", "warning", "note" };
+    private static final String[] SEVERITIES = { "error", "warning", "recommendation" };
+    private static final String[] PRECISIONS = { "medium", "high", "very-high" };
+    private static final String[] DIRS = { "src/main/java/com/example/service", "src/main/java/com/example/web",
+            "src/test/java/com/example", "build/generated/sources" };
+
+    private SarifGenerator() {
+    }
+
+    public static Path write(final Path target, final int rules, final int results, final int locations)
+            throws IOException {
+        try (OutputStream out = Files.newOutputStream(target);
+                JsonGenerator gen = new JsonFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            gen.writeStringField("$schema", SCHEMA);
+            gen.writeStringField("version", "2.1.0");
+            gen.writeArrayFieldStart("runs");
+            gen.writeStartObject();
+
+            gen.writeObjectFieldStart("tool");
+            gen.writeObjectFieldStart("driver");
+            gen.writeStringField("name", "CodeQL");
+            gen.writeStringField("organization", "GitHub");
+            gen.writeStringField("semanticVersion", "2.5.5");
+            gen.writeArrayFieldStart("rules");
+            for (int r = 0; r < rules; r++) {
+                writeRule(gen, r);
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+            gen.writeEndObject();
+
+            gen.writeArrayFieldStart("results");
+            for (int i = 0; i < results; i++) {
+                writeResult(gen, i, i % rules, locations);
+            }
+            gen.writeEndArray();
+
+            gen.writeEndObject();
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+        return target;
+    }
+
+    private static void writeRule(final JsonGenerator gen, final int r) throws IOException {
+        final String id = ruleId(r);
+        gen.writeStartObject();
+        gen.writeStringField("id", id);
+        gen.writeStringField("name", id);
+        gen.writeObjectFieldStart("shortDescription");
+        gen.writeStringField("text", "Short description of rule " + r);
+        gen.writeEndObject();
+        gen.writeObjectFieldStart("fullDescription");
+        gen.writeStringField("text", "A longer description of what rule " + r + " finds and why it matters.");
+        gen.writeEndObject();
+        gen.writeObjectFieldStart("defaultConfiguration");
+        gen.writeStringField("level", LEVELS[r % LEVELS.length]);
+        gen.writeEndObject();
+        gen.writeObjectFieldStart("properties");
+        gen.writeArrayFieldStart("tags");
+        gen.writeString("security");
+        gen.writeString("external/cwe/cwe-" + (100 + r % 900));
+        gen.writeEndArray();
+        gen.writeStringField("kind", "problem");
+        gen.writeStringField("precision", PRECISIONS[r % PRECISIONS.length]);
+        gen.writeStringField("problem.severity", SEVERITIES[r % SEVERITIES.length]);
+        gen.writeStringField("id", id);
+        gen.writeStringField("name", "Rule " + r);
+        gen.writeEndObject();
+        gen.writeEndObject();
+    }
+
+    private static void writeResult(final JsonGenerator gen, final int i, final int ruleIndex, final int locations)
+            throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("ruleId", ruleId(ruleIndex));
+        gen.writeNumberField("ruleIndex", ruleIndex);
+        gen.writeObjectFieldStart("message");
+        gen.writeStringField("text", "Result " + i + " of rule " + ruleIndex + " was found here.");
+        gen.writeEndObject();
+        gen.writeArrayFieldStart("locations");
+        for (int l = 0; l < locations; l++) {
+            final int line = 1 + (i * 7 + l * 13) % 2000;
+            gen.writeStartObject();
+            gen.writeObjectFieldStart("physicalLocation");
+            gen.writeObjectFieldStart("artifactLocation");
+            gen.writeStringField("uri", DIRS[(i + l) % DIRS.length] + "/File" + (i + l) % 500 + ".java");
+            gen.writeStringField("uriBaseId", "%SRCROOT%");
+            gen.writeNumberField("index", (i + l) % 500);
+            gen.writeEndObject();
+            gen.writeObjectFieldStart("region");
+            gen.writeNumberField("startLine", line);
+            gen.writeNumberField("endLine", line + l);
+            gen.writeNumberField("startColumn", 1 + l);
+            gen.writeNumberField("endColumn", 20 + l);
+            gen.writeEndObject();
+            gen.writeEndObject();
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
+
+    private static String ruleId(final int r) {
+        return "java/generated-rule-" + r;
+    }
+}
@@ -0,0 +1,460 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package se.janderssonse.sariftool;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.RandomAccess;
+
+import se.janderssonse.sariftool.model.sarif.CompactResult;
+import se.janderssonse.sariftool.model.sarif.Driver;
+import se.janderssonse.sariftool.model.sarif.ResultCursor;
+import se.janderssonse.sariftool.model.sarif.ResultStore;
+import se.janderssonse.sariftool.model.sarif.ResultView;
+import se.janderssonse.sariftool.model.sarif.Rule;
+import se.janderssonse.sariftool.model.sarif.RuleProperties;
+import se.janderssonse.sariftool.model.sarif.Run;
+
+/**
+ * Binary file of a parsed SARIF log, to map it again without parsing and validating the JSON.
+ * Every string is an index into one dictionary at the end of the file, and the results of a run
+ * are stored column by column, one packed array per {@link CompactResult} field, e.g. all start
+ * lines after each other. The file is memory mapped when read, a result is decoded from the
+ * columns when it is asked for.
+ *
+ * <pre>
+ * magic, version, schema, run count, runs..., dictionary, dictionary offset (long), magic
+ * run: driver, rule tables, result count, location count, result columns, location columns
+ * </pre>
+ *
+ * Numbers are big endian, a missing string or number is -1 or {@link CompactResult#NONE}.
+ * A change of the layout must bump {@link se.janderssonse.sariftool.util.ConversionCache#FORMAT_VERSION},
+ * as cached models are read with it.
+ */
+public final class SarifModelFile {
+
+    private static final int MAGIC = 0x5352_4d31;
+    private static final int MISSING = -1;
+    private static final int FOOTER_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private SarifModelFile() {
+    }
+
+    record Model(Optional<String> version, Optional<String> schema, List<Run> runs) {
+    }
+
+    /**
+     * Writes the runs of a validated parser to the file.
+     */
+    public static void write(final SarifParser parser, final Path file) throws IOException {
+        final Dictionary dictionary = new Dictionary();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(dictionary.id(parser.getVersion()));
+            out.writeInt(dictionary.id(parser.getSchema()));
+            out.writeInt(parser.getRuns().size());
+            for (Run run : parser.getRuns()) {
+                writeRun(out, run, dictionary);
+            }
+            // Counts up to Integer.MAX_VALUE, a larger file is refused below
+            final long dictionaryOffset = out.size();
+            dictionary.write(out);
+            out.writeLong(dictionaryOffset);
+            out.writeInt(MAGIC);
+        }
+        if (Files.size(file) > Integer.MAX_VALUE) {
+            Files.delete(file);
+            throw new IOException("Model of " + parser.sarifFile() + " is too large to map");
+        }
+    }
+
+    private static void writeRun(final DataOutputStream out, final Run run, final Dictionary dictionary)
+            throws IOException {
+        out.writeBoolean(run.driver().isPresent());
+        if (run.driver().isPresent()) {
+            final Driver driver = run.driver().get();
+            out.writeInt(dictionary.id(driver.name()));
+            out.writeInt(dictionary.id(driver.organization()));
+            out.writeInt(dictionary.id(driver.semanticVersion()));
+        }
+        final List<List<Rule>> tables = run.ruleTables();
+        out.writeInt(tables.size());
+        for (List<Rule> table : tables) {
+            out.writeInt(table.size());
+            for (Rule rule : table) {
+                writeRule(out, rule, dictionary);
+            }
+        }
+
+        // One pass per column, through cursors, so no result is made an object
+        final List<CompactResult> results = run.results();
+        int locations = 0;
+        ResultCursor result = ResultStore.cursor(results);
+        while (result.next()) {
+            locations += result.locationCount();
+        }
+        out.writeInt(results.size());
+        out.writeInt(locations);
+
+        result = ResultStore.cursor(results);
+        while (result.next()) {
+            out.writeInt(dictionary.id(result.ruleId()));
+        }
+        result = ResultStore.cursor(results);
+        while (result.next()) {
+            out.writeInt(result.ruleIndex());
+        }
+        result = ResultStore.cursor(results);
+        while (result.next()) {
+            out.writeInt(result.toolComponent());
+        }
+        result = ResultStore.cursor(results);
+        while (result.next()) {
+            out.writeInt(dictionary.id(result.message()));
+        }
+        result = ResultStore.cursor(results);
+        while (result.next()) {
+            out.writeLong(result.fingerprint());
+        }
+        // Index of each result's first location, and the end of the last
+        int firstLocation = 0;
+        result = ResultStore.cursor(results);
+        while (result.next()) {
+            out.writeInt(firstLocation);
+            firstLocation += result.locationCount();
+        }
+        out.writeInt(firstLocation);
+
+        result = ResultStore.cursor(results);
+        while (result.next()) {
+            for (int i = 0; i < result.locationCount(); i++) {
+                out.writeInt(dictionary.id(result.uri(i)));
+            }
+        }
+        result = ResultStore.cursor(results);
+        while (result.next()) {
+            for (int i = 0; i < result.locationCount(); i++) {
+                out.writeInt(dictionary.id(result.uriBaseId(i)));
+            }
+        }
+        for (int field = 0; field < LocationColumn.INTS; field++) {
+            result = ResultStore.cursor(results);
+            while (result.next()) {
+                for (int i = 0; i < result.locationCount(); i++) {
+                    out.writeInt(LocationColumn.value(result, i, field));
+                }
+            }
+        }
+    }
+
+    private static void writeRule(final DataOutputStream out, final Rule rule, final Dictionary dictionary)
+            throws IOException {
+        out.writeInt(dictionary.id(rule.id()));
+        out.writeInt(dictionary.id(rule.name()));
+        out.writeInt(dictionary.id(rule.shortDescription()));
+        out.writeInt(dictionary.id(rule.fullDescription()));
+        out.writeInt(rule.level().map(Enum::ordinal).orElse(MISSING));
+        out.writeBoolean(rule.properties().isPresent());
+        if (rule.properties().isPresent()) {
+            final RuleProperties properties = rule.properties().get();
+            out.writeInt(dictionary.id(properties.id()));
+            out.writeInt(dictionary.id(properties.name()));
+            out.writeInt(dictionary.id(properties.description()));
+            final List<String> tags = properties.tags().orElse(null);
+            out.writeInt(tags == null ? MISSING : tags.size());
+            if (tags != null) {
+                for (String tag : tags) {
+                    out.writeInt(dictionary.id(tag));
+                }
+            }
+            out.writeInt(dictionary.id(properties.kind()));
+            out.writeInt(dictionary.id(properties.precision()));
+            out.writeInt(properties.severity().map(Enum::ordinal).orElse(MISSING));
+        }
+    }
+
+    static Model read(final Path file) throws IOException {
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < Integer.BYTES + FOOTER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a model file: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        final int footer = buffer.limit() - FOOTER_BYTES;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(footer + Long.BYTES) != MAGIC) {
+            throw new IOException("Not a model file: " + file);
+        }
+        final Strings strings = new Strings(buffer, (int) buffer.getLong(footer));
+
+        final Reader in = new Reader(buffer, Integer.BYTES);
+        final Optional<String> version = strings.optional(in.nextInt());
+        final Optional<String> schema = strings.optional(in.nextInt());
+        final int runCount = in.nextInt();
+        final List<Run> runs = new ArrayList<>(runCount);
+        for (int i = 0; i < runCount; i++) {
+            runs.add(readRun(in, strings));
+        }
+        return new Model(version, schema, runs);
+    }
+
+    private static Run readRun(final Reader in, final Strings strings) {
+        Optional<Driver> driver = Optional.empty();
+        if (in.nextBoolean()) {
+            driver = Optional.of(new Driver(strings.optional(in.nextInt()), strings.optional(in.nextInt()),
+                    strings.optional(in.nextInt())));
+        }
+        final int tableCount = in.nextInt();
+        final List<List<Rule>> tables = new ArrayList<>(tableCount);
+        for (int t = 0; t < tableCount; t++) {
+            final int ruleCount = in.nextInt();
+            final List<Rule> rules = new ArrayList<>(ruleCount);
+            for (int r = 0; r < ruleCount; r++) {
+                rules.add(readRule(in, strings));
+            }
+            tables.add(rules);
+        }
+
+        final MappedResults results = new MappedResults(in, strings);
+        return new Run(driver, tables.isEmpty() ? List.of() : tables.get(0),
+                tables.isEmpty() ? List.of() : tables.subList(1, tables.size()), results);
+    }
+
+    private static Rule readRule(final Reader in, final Strings strings) {
+        final Optional<String> id = strings.optional(in.nextInt());
+        final Optional<String> name = strings.optional(in.nextInt());
+        final Optional<String> shortDescription = strings.optional(in.nextInt());
+        final Optional<String> fullDescription = strings.optional(in.nextInt());
+        final int level = in.nextInt();
+        Optional<RuleProperties> properties = Optional.empty();
+        if (in.nextBoolean()) {
+            final Optional<String> propertyId = strings.optional(in.nextInt());
+            final Optional<String> propertyName = strings.optional(in.nextInt());
+            final Optional<String> description = strings.optional(in.nextInt());
+            final int tagCount = in.nextInt();
+            Optional<ArrayList<String>> tags = Optional.empty();
+            if (tagCount != MISSING) {
+                final ArrayList<String> tagList = new ArrayList<>(tagCount);
+                for (int i = 0; i < tagCount; i++) {
+                    tagList.add(strings.get(in.nextInt()));
+                }
+                tags = Optional.of(tagList);
+            }
+            final Optional<String> kind = strings.optional(in.nextInt());
+            final Optional<String> precision = strings.optional(in.nextInt());
+            final int severity = in.nextInt();
+            properties = Optional.of(new RuleProperties(propertyId, propertyName, description, tags, kind,
+                    precision,
+                    severity == MISSING ? Optional.empty()
+                            : Optional.of(RuleProperties.Severity.values()[severity])));
+        }
+        return new Rule(id, name, shortDescription, fullDescription,
+                level == MISSING ? Optional.empty() : Optional.of(Rule.Level.values()[level]), properties);
+    }
+
+    // The int location fields, in column order
+    private static final class LocationColumn {
+        static final int INTS = 5;
+
+        static int value(final ResultView result, final int location, final int field) {
+            return switch (field) {
+                case 0 -> result.index(location);
+                case 1 -> result.startLine(location);
+                case 2 -> result.endLine(location);
+                case 3 -> result.startColumn(location);
+                default -> result.endColumn(location);
+            };
+        }
+    }
+
+    /**
+     * The results of a run, decoded from the mapped columns on each {@link #get(int)}.
+     */
+    private static final class MappedResults extends AbstractList<CompactResult> implements RandomAccess {
+        private final ByteBuffer buffer;
+        private final Strings strings;
+        private final int size;
+        private final int locations;
+        private final int ruleIds;
+        private final int ruleIndexes;
+        private final int toolComponents;
+        private final int messages;
+        private final int fingerprints;
+        private final int firstLocations;
+        private final int uris;
+        private final int uriBaseIds;
+        private final int locationInts;
+
+        MappedResults(final Reader in, final Strings strings) {
+            this.buffer = in.buffer;
+            this.strings = strings;
+            this.size = in.nextInt();
+            this.locations = in.nextInt();
+            this.ruleIds = in.skip(size * Integer.BYTES);
+            this.ruleIndexes = in.skip(size * Integer.BYTES);
+            this.toolComponents = in.skip(size * Integer.BYTES);
+            this.messages = in.skip(size * Integer.BYTES);
+            this.fingerprints = in.skip(size * Long.BYTES);
+            this.firstLocations = in.skip((size + 1) * Integer.BYTES);
+            this.uris = in.skip(locations * Integer.BYTES);
+            this.uriBaseIds = in.skip(locations * Integer.BYTES);
+            this.locationInts = in.skip(LocationColumn.INTS * locations * Integer.BYTES);
+        }
+
+        @Override
+        public CompactResult get(final int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            final int first = intAt(firstLocations, index);
+            final int count = intAt(firstLocations, index + 1) - first;
+            final CompactResult.Builder builder = CompactResult.builder(count)
+                    .ruleId(strings.get(intAt(ruleIds, index)))
+                    .ruleIndex(intAt(ruleIndexes, index))
+                    .toolComponent(intAt(toolComponents, index))
+                    .message(strings.get(intAt(messages, index)))
+                    .fingerprint(buffer.getLong(fingerprints + index * Long.BYTES));
+            for (int i = first; i < first + count; i++) {
+                builder.location(strings.get(intAt(uris, i)), strings.get(intAt(uriBaseIds, i)),
+                        locationInt(0, i), locationInt(1, i), locationInt(2, i), locationInt(3, i),
+                        locationInt(4, i));
+            }
+            return builder.build();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private int locationInt(final int field, final int location) {
+            return intAt(locationInts + field * locations * Integer.BYTES, location);
+        }
+
+        private int intAt(final int column, final int index) {
+            return buffer.getInt(column + index * Integer.BYTES);
+        }
+    }
+
+    /**
+     * The dictionary of a mapped file. Each string is decoded once, when first asked for.
+     */
+    private static final class Strings {
+        private final ByteBuffer buffer;
+        private final int offsets;
+        private final int bytes;
+        private final String[] decoded;
+
+        Strings(final ByteBuffer buffer, final int position) {
+            this.buffer = buffer;
+            final int count = buffer.getInt(position);
+            this.offsets = position + Integer.BYTES;
+            this.bytes = offsets + (count + 1) * Integer.BYTES;
+            this.decoded = new String[count];
+        }
+
+        // A race decodes a string twice, both copies are equal
+        String get(final int id) {
+            if (id == MISSING) {
+                return null;
+            }
+            String value = decoded[id];
+            if (value == null) {
+                final int start = buffer.getInt(offsets + id * Integer.BYTES);
+                final int end = buffer.getInt(offsets + (id + 1) * Integer.BYTES);
+                final byte[] utf8 = new byte[end - start];
+                buffer.get(bytes + start, utf8);
+                value = new String(utf8, StandardCharsets.UTF_8);
+                decoded[id] = value;
+            }
+            return value;
+        }
+
+        Optional<String> optional(final int id) {
+            return Optional.ofNullable(get(id));
+        }
+    }
+
+    /**
+     * Ids of the strings written so far, in the order first written.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<byte[]> values = new ArrayList<>();
+
+        int id(final Optional<String> value) {
+            return id(value.orElse(null));
+        }
+
+        int id(final String value) {
+            if (value == null) {
+                return MISSING;
+            }
+            final Integer id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            ids.put(value, values.size());
+            values.add(value.getBytes(StandardCharsets.UTF_8));
+            return values.size() - 1;
+        }
+
+        void write(final DataOutputStream out) throws IOException {
+            out.writeInt(values.size());
+            int offset = 0;
+            for (byte[] value : values) {
+                out.writeInt(offset);
+                offset += value.length;
+            }
+            out.writeInt(offset);
+            for (byte[] value : values) {
+                out.write(value);
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private int position;
+
+        Reader(final ByteBuffer buffer, final int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int nextInt() {
+            final int value = buffer.getInt(position);
+            position += Integer.BYTES;
+            return value;
+        }
+
+        boolean nextBoolean() {
+            return buffer.get(position++) != 0;
+        }
+
+        // Returns the position skipped from
+        int skip(final int bytes) {
+            final int start = position;
+            position += bytes;
+            return start;
+        }
+    }
+}
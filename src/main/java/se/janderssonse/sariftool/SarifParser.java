@@ -4,34 +4,56 @@
 
 package se.janderssonse.sariftool;
 
+import java.io.Closeable;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.logging.Logger;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 
+import se.janderssonse.sariftool.conf.LazyLogger;
 import se.janderssonse.sariftool.model.sarif.Driver;
-import se.janderssonse.sariftool.model.sarif.Location;
-import se.janderssonse.sariftool.model.sarif.Region;
+import se.janderssonse.sariftool.model.sarif.CompactResult;
 import se.janderssonse.sariftool.model.sarif.Result;
+import se.janderssonse.sariftool.model.sarif.ResultStore;
 import se.janderssonse.sariftool.model.sarif.Rule;
+import se.janderssonse.sariftool.model.sarif.Run;
 import se.janderssonse.sariftool.model.sarif.RuleProperties;
+import se.janderssonse.sariftool.util.CompactResultCodec;
+import se.janderssonse.sariftool.util.FileMetrics;
+import se.janderssonse.sariftool.util.FileMetrics.Stage;
+import se.janderssonse.sariftool.util.Hash64;
 import se.janderssonse.sariftool.util.JsonWrapper;
+import se.janderssonse.sariftool.util.MemoryBudget;
+import se.janderssonse.sariftool.util.SpillBuffer;
 import se.janderssonse.sariftool.util.Util;
+import se.janderssonse.sariftool.util.ValidationMode;
 
-public final class SarifParser {
+/**
+ * Parses a SARIF log into its runs, rules and results. With a limited {@link MemoryBudget}, a log whose
+ * JSON tree would not fit the budget is streamed instead, and the results beyond the budget are spilled
+ * to disk until they are mapped. Closing the parser removes any spill files.
+ */
+public final class SarifParser implements Closeable {
 
-    static final Logger LOG = Logger.getLogger(SarifParser.class.getName());
+    static final LazyLogger LOG = LazyLogger.getLogger(SarifParser.class);
+
+    // A Jackson tree takes several times the bytes of the JSON text it was read from
+    private static final long TREE_BYTES_PER_FILE_BYTE = 8;
 
     static final String ELEMENT_SCHEMA = "$schema";
     static final String ELEMENT_ARTIFACT_LOCATION = "artifactLocation";
@@ -43,12 +65,14 @@ public final class SarifParser {
     static final String ELEMENT_ID = "id";
     static final String ELEMENT_INDEX = "index";
     static final String ELEMENT_EXTENSIONS = "extensions";
+    static final String ELEMENT_FINGERPRINTS = "fingerprints";
     static final String ELEMENT_KIND = "kind";
     static final String ELEMENT_LEVEL = "level";
     static final String ELEMENT_LOCATIONS = "locations";
     static final String ELEMENT_MESSAGE = "message";
     static final String ELEMENT_NAME = "name";
     static final String ELEMENT_ORGANIZATION = "organization";
+    static final String ELEMENT_PARTIAL_FINGERPRINTS = "partialFingerprints";
     static final String ELEMENT_PHYSICAL_LOCATION = "physicalLocation";
     static final String ELEMENT_PRECISION = "precision";
     static final String ELEMENT_PROBLEM_SEVERITY = "problem.severity";
@@ -68,6 +92,7 @@ public final class SarifParser {
     static final String ELEMENT_TAGS = "tags";
     static final String ELEMENT_TEXT = "text";
     static final String ELEMENT_TOOL = "tool";
+    static final String ELEMENT_TOOL_COMPONENT = "toolComponent";
     static final String ELEMENT_URI = "uri";
     static final String ELEMENT_URI_BASE_ID = "uriBaseId";
     static final String ELEMENT_VERSION = "version";
@@ -77,9 +102,16 @@ public final class SarifParser {
     private boolean validated;
     private Path parseFile;
 
-    private Optional<Driver> driverDto;
+    private Optional<Driver> driverDto = Optional.empty();
+    private List<Run> runs = List.of();
     private List<Rule> rules = List.of();
-    private List<Result> results = List.of();
+    private List<CompactResult> results = List.of();
+    private final FileMetrics metrics;
+    private final ValidationMode validation;
+    private final MemoryBudget budget;
+    private boolean streamed;
+    // Only set when the validation is structural
+    private StructuralValidator structural;
 
     public boolean validated() {
         return validated;
@@ -101,102 +133,269 @@ public final class SarifParser {
         return driverDto;
     }
 
+    /**
+     * The results of all runs, in order.
+     */
     public List<Result> getResults() {
+        return CompactResult.asResults(results);
+    }
+
+    public List<CompactResult> getCompactResults() {
         return results;
     }
 
+    /**
+     * The rules of all runs, driver rules before extension rules.
+     */
     public List<Rule> getRules() {
         return rules;
     }
 
+    public List<Run> getRuns() {
+        return runs;
+    }
+
+    public FileMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Whether the log was streamed to keep within the memory budget, its results may then be on disk
+     * and are best iterated once.
+     */
+    public boolean streamed() {
+        return streamed;
+    }
+
     public SarifParser(final Path sarifFile) {
+        this(sarifFile, new FileMetrics(sarifFile));
+    }
+
+    public SarifParser(final Path sarifFile, final FileMetrics metrics) {
+        this(sarifFile, metrics, ValidationMode.FULL);
+    }
+
+    public SarifParser(final Path sarifFile, final FileMetrics metrics, final ValidationMode validation) {
+        this(sarifFile, metrics, validation, MemoryBudget.UNLIMITED);
+    }
+
+    public SarifParser(final Path sarifFile, final FileMetrics metrics, final ValidationMode validation,
+            final MemoryBudget budget) {
+        this.metrics = metrics;
+        this.validation = validation;
+        this.budget = budget;
         try {
-            LOG.info("Parsing: ".concat(sarifFile.toAbsolutePath().toString()));
+            LOG.info("Parsing: %s", sarifFile.toAbsolutePath());
             parseFile = sarifFile;
 
             map(sarifFile);
 
             if (validated) {
-                LOG.fine(String.format("Parsed %d rules, %d results from file %s.", rules.size(), results.size(),
-                        sarifFile.toAbsolutePath().toString()));
+                LOG.fine("Parsed %d runs, %d rules, %d results from file %s.", runs.size(), rules.size(),
+                        results.size(), sarifFile.toAbsolutePath());
             } else {
-                LOG.fine(String.format("Parsed 0 rules, 0 results from invalid file %s.",
-                        sarifFile.toAbsolutePath().toString()));
+                LOG.fine("Parsed 0 rules, 0 results from invalid file %s.", sarifFile.toAbsolutePath());
             }
         } catch (IllegalArgumentException | IOException e) {
-            LOG.warning("Failed parsing: " + e.getMessage());
-            LOG.severe("Failed parsing due to : " + e);
+            LOG.warning("Failed parsing: %s", e.getMessage());
+            LOG.severe("Failed parsing due to : %s", e);
+        }
+    }
+
+    // The model was validated when its SARIF file was parsed
+    private SarifParser(final Path sarifFile, final Path modelFile, final FileMetrics metrics) throws IOException {
+        this.metrics = metrics;
+        this.validation = ValidationMode.NONE;
+        this.budget = MemoryBudget.UNLIMITED;
+        this.parseFile = sarifFile;
+
+        final long start = System.nanoTime();
+        final SarifModelFile.Model model = SarifModelFile.read(modelFile);
+        metrics.addBytesRead(Files.size(modelFile));
+        metrics.time(Stage.READ, start);
+
+        validated = true;
+        version = model.version();
+        schema = model.schema();
+        mergeRuns(model.runs());
+        metrics.addResults(results.size());
+        LOG.fine("Mapped %d runs, %d rules, %d results of file %s from %s.", runs.size(), rules.size(),
+                results.size(), sarifFile.toAbsolutePath(), modelFile);
+    }
+
+    /**
+     * A parser over the model of a SARIF file, written by {@link SarifModelFile#write}. The model is
+     * memory mapped and its results are decoded as they are read, the SARIF file is not read at all.
+     */
+    public static SarifParser fromModel(final Path sarifFile, final Path modelFile, final FileMetrics metrics)
+            throws IOException {
+        return new SarifParser(sarifFile, modelFile, metrics);
+    }
+
+    private Run parseRun(final JsonNode node, final int runIndex) {
+        if (structural != null) {
+            structural.checkRun(node, runIndex);
+        }
+        Optional<Driver> driver = Optional.empty();
+        List<Rule> driverRules = List.of();
+        final List<List<Rule>> extensionRules = new ArrayList<>();
+
+        final JsonNode toolNode = node.path(ELEMENT_TOOL);
+        if (toolNode.has(ELEMENT_DRIVER)) {
+            final JsonNode driverNode = toolNode.get(ELEMENT_DRIVER);
+            driver = toDriver(driverNode);
+            driverRules = toRules(driverNode);
         }
+        for (JsonNode extension : toolNode.path(ELEMENT_EXTENSIONS)) {
+            extensionRules.add(toRules(extension));
+        }
+
+        return new Run(driver, driverRules, extensionRules, parseResults(node, runIndex));
     }
 
-    private void parseRun(final JsonNode node) {
-        parseRules(node);
-        parseResults(node);
+    // Runs are kept apart, the merged rules and results are what most callers need
+    private void mergeRuns(final List<Run> parsedRuns) {
+        runs = parsedRuns;
+        driverDto = parsedRuns.stream().map(Run::driver).flatMap(Optional::stream).findFirst();
+
+        if (parsedRuns.size() == 1) {
+            rules = parsedRuns.get(0).allRules();
+            results = parsedRuns.get(0).results();
+            return;
+        }
+        // Results are not copied, that would make an object of each stored, spilled or mapped result
+        rules = parsedRuns.stream().flatMap(run -> run.allRules().stream()).toList();
+        results = new ConcatenatedResults(parsedRuns);
     }
 
     public void map(final Path sarifInputFile) throws IOException, FileNotFoundException, IllegalArgumentException {
 
-        try (FileReader reader = new FileReader(sarifInputFile.toFile())) {
+        if (budget.limited() && Files.size(sarifInputFile) * TREE_BYTES_PER_FILE_BYTE > budget.maxBytes()) {
+            stream(sarifInputFile);
+            return;
+        }
+
+        long start = System.nanoTime();
+        final JsonNode rootNode = JsonWrapper.toNode(sarifInputFile);
+        metrics.addBytesRead(Files.size(sarifInputFile));
+        metrics.time(Stage.READ, start);
 
-            JsonNode rootNode = JsonWrapper.toNode(reader);
+        start = System.nanoTime();
+        final boolean valid;
+        try {
+            valid = validate(rootNode, sarifInputFile);
+        } finally {
+            metrics.time(Stage.VALIDATE, start);
+        }
 
-            if (Util.schemaValidate(sarifInputFile)) {
+        if (valid) {
 
-                validated = true;
+            start = System.nanoTime();
 
-                if (rootNode.has(ELEMENT_VERSION)) {
-                    version = asString(rootNode, SarifParser.ELEMENT_VERSION);
-                }
+            // Runs are parsed first, a structural check failing in a run leaves the parser unvalidated
+            final List<Run> parsedRuns = new ArrayList<>();
+            final JsonNode runNodes = rootNode.path(ELEMENT_RUNS);
+            for (int i = 0; i < runNodes.size(); i++) {
+                parsedRuns.add(parseRun(runNodes.get(i), i));
+            }
 
-                if (rootNode.has(ELEMENT_SCHEMA)) {
-                    schema = asString(rootNode, SarifParser.ELEMENT_SCHEMA);
-                }
+            validated = true;
 
-                if (rootNode.has(ELEMENT_RUNS)) {
-                    for (JsonNode singleRun : rootNode.get(ELEMENT_RUNS)) {
-                        parseRun(singleRun);
-                    }
-                }
+            if (rootNode.has(ELEMENT_VERSION)) {
+                version = asString(rootNode, SarifParser.ELEMENT_VERSION);
+            }
+
+            if (rootNode.has(ELEMENT_SCHEMA)) {
+                schema = asString(rootNode, SarifParser.ELEMENT_SCHEMA);
             }
+
+            mergeRuns(parsedRuns);
+            metrics.addResults(results.size());
+            metrics.time(Stage.PARSE, start);
         }
 
     }
 
-    private void parseRules(final JsonNode node) {
-        if (node.has(ELEMENT_TOOL)) {
-            final JsonNode toolNode = node.get(ELEMENT_TOOL);
+    // Reading and parsing are one pass here, both are timed as parsing
+    private void stream(final Path sarifInputFile) throws IOException {
+        streamed = true;
+        if (validation == ValidationMode.FULL) {
+            LOG.warning("Schema validation needs all of %s in memory, checking its structure only",
+                    sarifInputFile.getFileName());
+        }
+        final long start = System.nanoTime();
+        final StreamedRuns listener = new StreamedRuns(budget);
+        try {
+            // Results are spilled in the order read, they need no rules until they are mapped
+            new SarifStreamParser(sarifInputFile,
+                    validation == ValidationMode.NONE ? null : new StructuralValidator(sarifInputFile), false, budget)
+                    .parse(listener);
+        } catch (IOException | RuntimeException e) {
+            listener.close();
+            throw e;
+        }
+        metrics.addBytesRead(Files.size(sarifInputFile));
+
+        validated = true;
+        version = listener.version;
+        schema = listener.schema;
+        mergeRuns(listener.runs);
+        metrics.addResults(results.size());
+        metrics.time(Stage.PARSE, start);
+    }
+
+    /**
+     * Removes the spill files of a streamed log.
+     */
+    @Override
+    public void close() {
+        closeRuns(runs);
+    }
 
-            if (toolNode.has(ELEMENT_DRIVER)) {
-                final JsonNode driver = toolNode.get(ELEMENT_DRIVER);
-                driverDto = toDriver(driver);
+    private static void closeRuns(final List<Run> parsedRuns) {
+        parsedRuns.forEach(run -> closeResults(run.results()));
+    }
 
-                if (!driver.isMissingNode() && driver.has(ELEMENT_RULES)) {
-                    processRules(driver.get(ELEMENT_RULES));
-                }
+    private static void closeResults(final List<CompactResult> runResults) {
+        if (runResults instanceof SpillBuffer<CompactResult> spilled) {
+            try {
+                spilled.close();
+            } catch (IOException e) {
+                LOG.warning("Could not remove spilled results: %s", e.getMessage());
             }
+        }
+    }
 
-            if (toolNode.has(ELEMENT_EXTENSIONS)) {
-                final JsonNode extensions = toolNode.get(ELEMENT_EXTENSIONS);
-                extensions.forEach(extension -> {
-                    final JsonNode ext = extension;
-                    if (ext.has(ELEMENT_RULES)) {
-                        processRules(ext.get(ELEMENT_RULES));
-                    }
-                });
+    // Structural checks are made while parsing, only the root is checked up front
+    private boolean validate(final JsonNode rootNode, final Path sarifInputFile) {
+        return switch (validation) {
+            case FULL -> Util.schemaValidate(rootNode, sarifInputFile);
+            case STRUCTURAL -> {
+                structural = new StructuralValidator(sarifInputFile);
+                structural.checkRoot(rootNode);
+                yield true;
             }
+            case NONE -> true;
+        };
+    }
+
+    private static List<Rule> toRules(final JsonNode toolComponent) {
+        if (!toolComponent.has(ELEMENT_RULES)) {
+            return List.of();
         }
+        final Stream<JsonNode> s = StreamSupport.stream(toolComponent.get(ELEMENT_RULES).spliterator(), false);
+        return s.map(SarifParser::toRule).toList();
     }
 
-    private void processRules(final JsonNode node) {
-        Stream<JsonNode> s = StreamSupport.stream(node.spliterator(), false);
-        rules = s.map(ruleNode -> new Rule(
+    static Rule toRule(final JsonNode ruleNode) {
+        return new Rule(
                 asString(ruleNode, ELEMENT_ID), asString(ruleNode, ELEMENT_NAME),
                 toTextElement(ruleNode, ELEMENT_SHORT_DESCRIPTION),
                 toTextElement(ruleNode, ELEMENT_FULL_DESCRIPTION), toRuleLevel(ruleNode),
-                toRuleProperties(ruleNode))).toList();
+                toRuleProperties(ruleNode));
     }
 
-    private Optional<Driver> toDriver(final JsonNode node) {
+    static Optional<Driver> toDriver(final JsonNode node) {
         if (node.isMissingNode()) {
             return Optional.empty();
         }
@@ -205,7 +404,7 @@ public final class SarifParser {
                 asString(node, ELEMENT_SEMANTIC_VERSION)));
     }
 
-    private Optional<Rule.Level> toRuleLevel(final JsonNode node) {
+    private static Optional<Rule.Level> toRuleLevel(final JsonNode node) {
         if (node.has(ELEMENT_DEFAULT_CONFIGURATION)) {
             final JsonNode defaultConfig = node.get(ELEMENT_DEFAULT_CONFIGURATION);
             if (defaultConfig.has(ELEMENT_LEVEL)) {
@@ -214,15 +413,14 @@ public final class SarifParser {
                     return levelAsString.isEmpty() ? Optional.empty()
                             : Optional.of(Rule.Level.valueOf(levelAsString.get().toUpperCase(Locale.ROOT)));
                 } catch (IllegalArgumentException e) {
-                    LOG.warning(
-                            String.format("Failed to interpret %s as Rule.Level: %s", levelAsString, e.getMessage()));
+                    LOG.warning("Failed to interpret %s as Rule.Level: %s", levelAsString, e.getMessage());
                 }
             }
         }
         return Optional.empty();
     }
 
-    private Optional<RuleProperties> toRuleProperties(final JsonNode node) {
+    private static Optional<RuleProperties> toRuleProperties(final JsonNode node) {
         if (node.has(ELEMENT_PROPERTIES)) {
             final JsonNode properties = node.get(ELEMENT_PROPERTIES);
             return Optional.of(new RuleProperties(
@@ -234,32 +432,25 @@ public final class SarifParser {
         return Optional.empty();
     }
 
-    private Optional<String> asString(final JsonNode node, final String elementId) {
+    private static Optional<String> asString(final JsonNode node, final String elementId) {
         return !node.isMissingNode() && node.has(elementId) ? Optional.of(node.get(elementId).asText())
                 : Optional.empty();
     }
 
-    private Optional<Integer> asInt(final JsonNode node, final String elementId) {
-        return !node.isMissingNode() && node.has(elementId) ? Optional.of(node.get(elementId).asInt())
-                : Optional.empty();
-    }
-
-    private Optional<RuleProperties.Severity> toSeverity(final JsonNode node) {
+    private static Optional<RuleProperties.Severity> toSeverity(final JsonNode node) {
         if (node.has(ELEMENT_PROBLEM_SEVERITY)) {
             final Optional<String> severityAsString = asString(node, ELEMENT_PROBLEM_SEVERITY);
             try {
                 return Optional.of(RuleProperties.Severity.valueOf(severityAsString.orElse("")));
             } catch (IllegalArgumentException e) {
-                LOG.warning(
-                        String.format("Failed to interpret %s as RuleProperties.Severity: %s",
-                                severityAsString.orElse(""),
-                                e.getMessage()));
+                LOG.warning("Failed to interpret %s as RuleProperties.Severity: %s", severityAsString.orElse(""),
+                        e.getMessage());
             }
         }
         return Optional.empty();
     }
 
-    private ArrayList<String> toTags(final JsonNode node) {
+    private static ArrayList<String> toTags(final JsonNode node) {
         final HashSet<String> result = new HashSet<>();
         if (node.has(ELEMENT_TAGS)) {
             node.get(ELEMENT_TAGS).forEach(t -> result.add(t.asText()));
@@ -267,63 +458,245 @@ public final class SarifParser {
         return new ArrayList<>(result);
     }
 
-    private void parseResults(final JsonNode node) {
+    private List<CompactResult> parseResults(final JsonNode node, final int runIndex) {
         if (node.has(ELEMENT_RESULTS)) {
-            Stream<JsonNode> a = StreamSupport.stream(node.get(ELEMENT_RESULTS).spliterator(), false);
-            results = a.map(result -> {
-                final JsonNode resultJsonObject = result;
-
-                Optional<Integer> resultIndex = asInt(resultJsonObject, ELEMENT_RULE_INDEX);
-                if (resultIndex.isEmpty() && resultJsonObject.has(ELEMENT_RULE)) {
-                    resultIndex = asInt(resultJsonObject
-                            .get(ELEMENT_RULE), ELEMENT_INDEX);
+            final JsonNode resultNodes = node.get(ELEMENT_RESULTS);
+            // The store holds each string once, the ones of each parsed result need no pooling
+            final ResultStore parsed = new ResultStore();
+            for (int i = 0; i < resultNodes.size(); i++) {
+                final JsonNode result = resultNodes.get(i);
+                if (structural != null) {
+                    structural.checkResult(result, runIndex, i);
                 }
-                Result resultDto = new Result(asString(resultJsonObject, ELEMENT_RULE_ID), resultIndex,
-                        toTextElement(resultJsonObject, ELEMENT_MESSAGE), Optional.of(toLocations(resultJsonObject)));
-                return resultDto;
-            }).toList();
+                parsed.add(toCompactResult(result, UnaryOperator.identity()));
+            }
+            return parsed.seal();
+        }
+        return List.of();
+    }
+
+    static CompactResult toCompactResult(final JsonNode resultJsonObject, final UnaryOperator<String> intern) {
+        final JsonNode rule = resultJsonObject.path(ELEMENT_RULE);
+        int ruleIndex = asIntOrNone(resultJsonObject, ELEMENT_RULE_INDEX);
+        if (ruleIndex == CompactResult.NONE) {
+            ruleIndex = asIntOrNone(rule, ELEMENT_INDEX);
+        }
+
+        // Also render relatedLocations if required...
+        final JsonNode locations = resultJsonObject.path(ELEMENT_LOCATIONS);
+        int physicalLocations = 0;
+        for (JsonNode location : locations) {
+            if (location.has(ELEMENT_PHYSICAL_LOCATION)) {
+                physicalLocations++;
+            }
+        }
+
+        final CompactResult.Builder builder = CompactResult.builder(physicalLocations)
+                .ruleId(intern.apply(asTextOrNull(resultJsonObject, ELEMENT_RULE_ID)))
+                .ruleIndex(ruleIndex)
+                .toolComponent(asIntOrNone(rule.path(ELEMENT_TOOL_COMPONENT), ELEMENT_INDEX))
+                .message(asTextOrNull(resultJsonObject.path(ELEMENT_MESSAGE), ELEMENT_TEXT))
+                .fingerprint(toFingerprint(resultJsonObject));
+
+        for (JsonNode location : locations) {
+            if (location.has(ELEMENT_PHYSICAL_LOCATION)) {
+                final JsonNode physicalLocation = location.get(ELEMENT_PHYSICAL_LOCATION);
+                final JsonNode artifactLocation = physicalLocation.path(ELEMENT_ARTIFACT_LOCATION);
+                final JsonNode region = physicalLocation.path(ELEMENT_REGION);
+                final String uri = asTextOrNull(artifactLocation, ELEMENT_URI);
+                builder.location(
+                        intern.apply(uri != null ? uri : ""),
+                        intern.apply(asTextOrNull(artifactLocation, ELEMENT_URI_BASE_ID)),
+                        asIntOrNone(artifactLocation, ELEMENT_INDEX),
+                        asIntOrNone(region, ELEMENT_START_LINE),
+                        asIntOrNone(region, ELEMENT_END_LINE),
+                        asIntOrNone(region, ELEMENT_START_COLUMN),
+                        asIntOrNone(region, ELEMENT_END_COLUMN));
+            }
+        }
+        return builder.build();
+    }
+
+    // fingerprints are stable across runs by definition. partialFingerprints are only hints, e.g. a hash
+    // of the line content, the same code in two modules has the same, so they are combined with the uri.
+    private static long toFingerprint(final JsonNode resultJsonObject) {
+        JsonNode fingerprints = resultJsonObject.path(ELEMENT_FINGERPRINTS);
+        long hash = Hash64.SEED;
+        if (fingerprints.isEmpty()) {
+            fingerprints = resultJsonObject.path(ELEMENT_PARTIAL_FINGERPRINTS);
+            hash = Hash64.hash(hash, primaryUri(resultJsonObject));
+        }
+        if (!fingerprints.isObject() || fingerprints.isEmpty()) {
+            return CompactResult.NO_FINGERPRINT;
+        }
+        final Iterator<String> names = fingerprints.fieldNames();
+        while (names.hasNext()) {
+            final String name = names.next();
+            hash = Hash64.hash(Hash64.hash(hash, name), fingerprints.get(name).asText());
+        }
+        return hash == CompactResult.NO_FINGERPRINT ? 1 : hash;
+    }
 
-        } else {
-            results = List.of();
+    private static String primaryUri(final JsonNode resultJsonObject) {
+        for (JsonNode location : resultJsonObject.path(ELEMENT_LOCATIONS)) {
+            if (location.has(ELEMENT_PHYSICAL_LOCATION)) {
+                return asTextOrNull(location.get(ELEMENT_PHYSICAL_LOCATION).path(ELEMENT_ARTIFACT_LOCATION),
+                        ELEMENT_URI);
+            }
         }
+        return null;
+    }
+
+    private static String asTextOrNull(final JsonNode node, final String elementId) {
+        final JsonNode element = node.get(elementId);
+        return element != null ? element.asText() : null;
+    }
+
+    private static int asIntOrNone(final JsonNode node, final String elementId) {
+        final JsonNode element = node.get(elementId);
+        return element != null ? element.asInt() : CompactResult.NONE;
     }
 
-    private Optional<String> toTextElement(final JsonNode node, final String parentProperty) {
+    private static Optional<String> toTextElement(final JsonNode node, final String parentProperty) {
         JsonNode element = node.get(parentProperty);
         JsonNode ob = element != null ? element : JsonNodeFactory.instance.objectNode();
         return asString(ob, ELEMENT_TEXT);
     }
 
-    private List<Location> toLocations(final JsonNode node) {
-        final ArrayList<Location> result = new ArrayList<>();
+    /**
+     * Builds the runs of a streamed log. Each run's results go to a {@link SpillBuffer} given what is
+     * left of the budget after the runs before it.
+     */
+    private static final class StreamedRuns implements SarifStreamParser.Listener {
+        private final MemoryBudget budget;
+        private final List<Run> runs = new ArrayList<>();
+        private long remainingBytes;
+        private Optional<String> version = Optional.empty();
+        private Optional<String> schema = Optional.empty();
+        private Optional<Driver> driver;
+        private List<Rule> driverRules;
+        private List<List<Rule>> extensionRules;
+        private List<Rule> componentRules;
+        private SpillBuffer<CompactResult> results;
+
+        StreamedRuns(final MemoryBudget budget) {
+            this.budget = budget;
+            this.remainingBytes = budget.maxBytes();
+        }
 
-        if (node.has(ELEMENT_LOCATIONS)) {
+        @Override
+        public void onVersion(final String value) {
+            version = Optional.ofNullable(value);
+        }
 
-            final JsonNode locations = node.get(ELEMENT_LOCATIONS);
-            // Also render relatedLocations if required...
+        @Override
+        public void onSchema(final String value) {
+            schema = Optional.ofNullable(value);
+        }
 
-            locations.forEach(loc -> {
-                final JsonNode locationJsonObject = loc;
-                if (locationJsonObject.has(ELEMENT_PHYSICAL_LOCATION)) {
-                    final JsonNode physicalLocation = locationJsonObject.get(ELEMENT_PHYSICAL_LOCATION);
-                    final JsonNode artifactLocation = physicalLocation.get(ELEMENT_ARTIFACT_LOCATION);
-                    result.add(new Location(
-                            asString(artifactLocation, ELEMENT_URI).orElse(""),
-                            asString(artifactLocation, ELEMENT_URI_BASE_ID),
-                            asInt(artifactLocation, ELEMENT_INDEX),
-                            Optional.of(toRegion(physicalLocation.get(ELEMENT_REGION)))));
-                }
-            });
+        @Override
+        public void onRunStart() {
+            driver = Optional.empty();
+            driverRules = new ArrayList<>();
+            extensionRules = new ArrayList<>();
+            componentRules = driverRules;
+            results = new SpillBuffer<>(CompactResultCodec.INSTANCE, remainingBytes, budget.spillDir());
+        }
+
+        @Override
+        public void onToolComponent(final boolean isDriver) {
+            if (isDriver) {
+                componentRules = driverRules;
+            } else {
+                componentRules = new ArrayList<>();
+                extensionRules.add(componentRules);
+            }
+        }
+
+        @Override
+        public void onDriver(final Driver value) {
+            driver = Optional.of(value);
+        }
+
+        @Override
+        public void onRule(final Rule rule) {
+            componentRules.add(rule);
+        }
+
+        @Override
+        public void onCompactResult(final CompactResult result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onRunEnd() {
+            remainingBytes = Math.max(0, remainingBytes - results.memoryBytes());
+            runs.add(new Run(driver, driverRules, extensionRules, results));
+            results = null;
+        }
+
+        void close() {
+            closeRuns(runs);
+            if (results != null) {
+                closeResults(results);
+            }
         }
-        return result;
     }
 
-    private Region toRegion(final JsonNode node) {
-        return new Region(
-                asInt(node, ELEMENT_START_LINE).get(),
-                asInt(node, ELEMENT_END_LINE),
-                asInt(node, ELEMENT_START_COLUMN),
-                asInt(node, ELEMENT_END_COLUMN));
+    /**
+     * The results of several runs in order, without copying them. Iterating reads each run's results
+     * once, {@link #get(int)} walks them.
+     */
+    private static final class ConcatenatedResults extends AbstractList<CompactResult> {
+        private final List<Run> parsedRuns;
+        private final int size;
+
+        ConcatenatedResults(final List<Run> parsedRuns) {
+            this.parsedRuns = parsedRuns;
+            this.size = parsedRuns.stream().mapToInt(run -> run.results().size()).sum();
+        }
+
+        @Override
+        public CompactResult get(final int index) {
+            int offset = index;
+            for (Run run : parsedRuns) {
+                if (offset < run.results().size()) {
+                    return run.results().get(offset);
+                }
+                offset -= run.results().size();
+            }
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        // Not a flatMap stream, its iterator would buffer a whole run
+        @Override
+        public Iterator<CompactResult> iterator() {
+            final Iterator<Run> runIterator = parsedRuns.iterator();
+            return new Iterator<>() {
+                private Iterator<CompactResult> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && runIterator.hasNext()) {
+                        current = runIterator.next().results().iterator();
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public CompactResult next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+            };
+        }
     }
 
 }
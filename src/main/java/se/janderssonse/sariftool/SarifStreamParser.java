@@ -0,0 +1,313 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package se.janderssonse.sariftool;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import se.janderssonse.sariftool.conf.LazyLogger;
+import se.janderssonse.sariftool.model.sarif.CompactResult;
+import se.janderssonse.sariftool.model.sarif.Driver;
+import se.janderssonse.sariftool.model.sarif.Result;
+import se.janderssonse.sariftool.model.sarif.Rule;
+import se.janderssonse.sariftool.util.CompactResultCodec;
+import se.janderssonse.sariftool.util.JsonWrapper;
+import se.janderssonse.sariftool.util.MemoryBudget;
+import se.janderssonse.sariftool.util.SpillBuffer;
+import se.janderssonse.sariftool.util.StringPool;
+
+/**
+ * Token based SARIF reader. Walks the log with a Jackson {@link JsonParser} and
+ * hands every rule and result to a {@link Listener} as soon as it is read, so
+ * only one rule or result is held as a tree at a time.
+ *
+ * No JSON schema validation is done here, as that requires the full document. With a
+ * {@link StructuralValidator}, its checks are made on each element as it is read.
+ */
+public final class SarifStreamParser {
+
+    static final LazyLogger LOG = LazyLogger.getLogger(SarifStreamParser.class);
+
+    public interface Listener {
+
+        default void onVersion(final String version) {
+        }
+
+        default void onSchema(final String schema) {
+        }
+
+        default void onRunStart() {
+        }
+
+        default void onRunEnd() {
+        }
+
+        /**
+         * Called before the rules of each tool component, the driver or an extension.
+         */
+        default void onToolComponent(final boolean driver) {
+        }
+
+        default void onDriver(final Driver driver) {
+        }
+
+        default void onRule(final Rule rule) {
+        }
+
+        default void onResult(final Result result) {
+        }
+
+        default void onCompactResult(final CompactResult result) {
+            onResult(result.toResult());
+        }
+    }
+
+    private final Path sarifFile;
+    private final StringPool strings = new StringPool();
+    // Null when results are not checked
+    private final StructuralValidator structural;
+    private final boolean rulesFirst;
+    private final MemoryBudget budget;
+    private int runIndex;
+    // What the structural validation needs of the tool of the current run
+    private boolean driverSeen;
+    private boolean driverNamed;
+
+    public SarifStreamParser(final Path sarifFile) {
+        this(sarifFile, MemoryBudget.UNLIMITED);
+    }
+
+    /**
+     * @param budget heap for results written before the tool, which are held back until its rules are read,
+     *               the rest are spilled to disk
+     */
+    public SarifStreamParser(final Path sarifFile, final MemoryBudget budget) {
+        this(sarifFile, null, true, budget);
+    }
+
+    /**
+     * @param structural checks each result as it is read, or null
+     * @param rulesFirst whether results written before the tool are held back until its rules are read
+     */
+    SarifStreamParser(final Path sarifFile, final StructuralValidator structural, final boolean rulesFirst,
+            final MemoryBudget budget) {
+        this.sarifFile = sarifFile;
+        this.structural = structural;
+        this.rulesFirst = rulesFirst;
+        this.budget = budget;
+    }
+
+    public Path sarifFile() {
+        return sarifFile;
+    }
+
+    public void parse(final Listener listener) throws IOException, IllegalArgumentException {
+        LOG.info("Stream parsing: %s", sarifFile.toAbsolutePath());
+
+        try (JsonParser parser = JsonWrapper.toParser(sarifFile)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException(
+                        String.format("Not a SARIF log, root is not an object: %s", sarifFile.getFileName()));
+            }
+
+            boolean runsSeen = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case SarifParser.ELEMENT_VERSION -> readText(parser, field).ifPresent(listener::onVersion);
+                    case SarifParser.ELEMENT_SCHEMA -> readText(parser, field).ifPresent(listener::onSchema);
+                    case SarifParser.ELEMENT_RUNS -> {
+                        runsSeen = true;
+                        parseRuns(parser, listener);
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            if (structural != null) {
+                structural.checkRuns(runsSeen);
+            }
+        }
+    }
+
+    // An object or array is skipped, so its fields are not read as those of the root
+    private Optional<String> readText(final JsonParser parser, final String field) throws IOException {
+        final JsonToken token = parser.currentToken();
+        if (structural != null) {
+            structural.checkRootElement(token == JsonToken.VALUE_STRING, field, "is not a string");
+        }
+        if (!token.isScalarValue()) {
+            parser.skipChildren();
+            return Optional.empty();
+        }
+        return Optional.ofNullable(parser.getValueAsString());
+    }
+
+    private void parseRuns(final JsonParser parser, final Listener listener) throws IOException {
+        if (structural != null) {
+            structural.checkRuns(parser.currentToken() == JsonToken.START_ARRAY);
+        }
+        forEachObject(parser, () -> parseRun(parser, listener),
+                () -> checkRun(false, "", "is not an object"));
+    }
+
+    private void parseRun(final JsonParser parser, final Listener listener) throws IOException {
+        listener.onRunStart();
+        driverSeen = false;
+        driverNamed = false;
+        boolean toolSeen = !rulesFirst;
+        // Results are normally written after the tool, if not, keep them until the rules are known,
+        // those beyond the memory budget on disk
+        try (SpillBuffer<CompactResult> pending = new SpillBuffer<>(CompactResultCodec.INSTANCE,
+                budget.limited() ? budget.maxBytes() : Long.MAX_VALUE, budget.spillDir())) {
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case SarifParser.ELEMENT_TOOL -> {
+                        parseTool(parser, listener);
+                        if (!toolSeen) {
+                            toolSeen = true;
+                            pending.forEach(listener::onCompactResult);
+                        }
+                    }
+                    case SarifParser.ELEMENT_RESULTS -> {
+                        checkRun(parser.currentToken() == JsonToken.START_ARRAY
+                                || parser.currentToken() == JsonToken.VALUE_NULL, ".results", "is not an array");
+                        parseResults(parser, toolSeen ? listener::onCompactResult : pending::add);
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            checkRun(driverSeen, ".tool.driver", "is not an object");
+            checkRun(driverNamed, ".tool.driver.name", "is not a string");
+            if (!toolSeen) {
+                pending.forEach(listener::onCompactResult);
+            }
+        }
+        listener.onRunEnd();
+        runIndex++;
+    }
+
+    private void parseTool(final JsonParser parser, final Listener listener) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case SarifParser.ELEMENT_DRIVER -> {
+                    checkRun(parser.currentToken() == JsonToken.START_OBJECT, ".tool.driver", "is not an object");
+                    parseToolComponent(parser, listener, true);
+                }
+                case SarifParser.ELEMENT_EXTENSIONS -> {
+                    checkRun(parser.currentToken() == JsonToken.START_ARRAY, ".tool.extensions", "is not an array");
+                    forEachObject(parser, () -> parseToolComponent(parser, listener, false),
+                            () -> checkRun(false, ".tool.extensions[]", "is not an object"));
+                }
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void parseToolComponent(final JsonParser parser, final Listener listener, final boolean isDriver)
+            throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        listener.onToolComponent(isDriver);
+        driverSeen |= isDriver;
+        // Only the scalar driver fields are kept, rules are handed over one by one
+        final ObjectNode component = JsonNodeFactory.instance.objectNode();
+        final String rulesPath = isDriver ? ".tool.driver.rules" : ".tool.extensions[].rules";
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.currentName();
+            final JsonToken token = parser.nextToken();
+            if (SarifParser.ELEMENT_RULES.equals(field)) {
+                checkRun(token == JsonToken.START_ARRAY, rulesPath, "is not an array");
+                forEachObject(parser, () -> {
+                    final JsonNode rule = parser.readValueAsTree();
+                    if (structural != null) {
+                        structural.checkRule(rule, runIndex, rulesPath);
+                    }
+                    listener.onRule(SarifParser.toRule(rule));
+                }, () -> checkRun(false, rulesPath + "[]", "is not an object with a string id"));
+            } else if (token.isScalarValue()) {
+                if (isDriver && SarifParser.ELEMENT_NAME.equals(field)) {
+                    driverNamed = token == JsonToken.VALUE_STRING;
+                }
+                component.put(field, parser.getValueAsString());
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (isDriver) {
+            final Optional<Driver> driver = SarifParser.toDriver(component);
+            driver.ifPresent(listener::onDriver);
+        }
+    }
+
+    private void parseResults(final JsonParser parser, final Consumer<CompactResult> consumer)
+            throws IOException {
+        final int[] resultIndex = new int[1];
+        forEachObject(parser, () -> {
+            final JsonNode resultNode = parser.readValueAsTree();
+            if (structural != null) {
+                structural.checkResult(resultNode, runIndex, resultIndex[0]);
+            }
+            resultIndex[0]++;
+            consumer.accept(SarifParser.toCompactResult(resultNode, strings::intern));
+        }, () -> {
+            if (structural != null) {
+                structural.checkResult(JsonNodeFactory.instance.nullNode(), runIndex, resultIndex[0]);
+            }
+            resultIndex[0]++;
+        });
+    }
+
+    // Without a validator the element is skipped
+    private void checkRun(final boolean isValid, final String where, final String problem) {
+        if (structural != null) {
+            structural.checkRunElement(isValid, runIndex, where, problem);
+        }
+    }
+
+    private interface ElementHandler {
+        void handle() throws IOException;
+    }
+
+    // Calls the handler for each object element of the array at the current token, and 'other' for
+    // any other element before it is skipped
+    private static void forEachObject(final JsonParser parser, final ElementHandler handler,
+            final ElementHandler other) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token == JsonToken.START_OBJECT) {
+                handler.handle();
+            } else {
+                other.handle();
+                parser.skipChildren();
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package se.janderssonse.sariftool;
+
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_ARTIFACT_LOCATION;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_DRIVER;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_END_COLUMN;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_END_LINE;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_EXTENSIONS;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_FINGERPRINTS;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_ID;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_INDEX;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_LOCATIONS;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_MESSAGE;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_NAME;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_PARTIAL_FINGERPRINTS;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_PHYSICAL_LOCATION;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_REGION;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_RESULTS;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_RULE;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_RULES;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_RULE_ID;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_RULE_INDEX;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_RUNS;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_SCHEMA;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_START_COLUMN;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_START_LINE;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_TEXT;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_TOOL;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_TOOL_COMPONENT;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_URI;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_URI_BASE_ID;
+import static se.janderssonse.sariftool.SarifParser.ELEMENT_VERSION;
+
+import java.nio.file.Path;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Checks only the SARIF elements the conversion reads, e.g. that {@code runs} is an array,
+ * every run has a {@code tool.driver} and a {@code region.startLine} is a positive integer.
+ * The checks are made by {@link SarifParser} on each node as it is parsed, instead of in a separate
+ * pass over the whole document as the schema validation does. The path of a failing element is only
+ * built when a check fails.
+ */
+final class StructuralValidator {
+
+    private static final int NONE = -1;
+
+    private final Path sarifFile;
+
+    StructuralValidator(final Path sarifFile) {
+        this.sarifFile = sarifFile;
+    }
+
+    void checkRoot(final JsonNode root) {
+        if (!root.isObject()) {
+            throw fail("root", "is not an object");
+        }
+        if (!root.path(ELEMENT_RUNS).isArray()) {
+            throw fail(ELEMENT_RUNS, "is not an array");
+        }
+        optionalRootText(root, ELEMENT_VERSION);
+        optionalRootText(root, ELEMENT_SCHEMA);
+    }
+
+    private void optionalRootText(final JsonNode node, final String element) {
+        final JsonNode value = node.get(element);
+        checkRootElement(value == null || value.isTextual(), element, "is not a string");
+    }
+
+    void checkRun(final JsonNode run, final int runIndex) {
+        if (!run.isObject()) {
+            throw fail(path(runIndex, NONE, NONE, ""), "is not an object");
+        }
+        final JsonNode driver = run.path(ELEMENT_TOOL).path(ELEMENT_DRIVER);
+        if (!driver.isObject()) {
+            throw fail(path(runIndex, NONE, NONE, ".tool.driver"), "is not an object");
+        }
+        if (!driver.path(ELEMENT_NAME).isTextual()) {
+            throw fail(path(runIndex, NONE, NONE, ".tool.driver.name"), "is not a string");
+        }
+        checkRules(driver, runIndex, ".tool.driver.rules");
+
+        final JsonNode extensions = run.path(ELEMENT_TOOL).path(ELEMENT_EXTENSIONS);
+        if (!extensions.isMissingNode()) {
+            if (!extensions.isArray()) {
+                throw fail(path(runIndex, NONE, NONE, ".tool.extensions"), "is not an array");
+            }
+            for (JsonNode extension : extensions) {
+                if (!extension.isObject()) {
+                    throw fail(path(runIndex, NONE, NONE, ".tool.extensions[]"), "is not an object");
+                }
+                checkRules(extension, runIndex, ".tool.extensions[].rules");
+            }
+        }
+
+        final JsonNode results = run.path(ELEMENT_RESULTS);
+        if (!results.isMissingNode() && !results.isNull() && !results.isArray()) {
+            throw fail(path(runIndex, NONE, NONE, ".results"), "is not an array");
+        }
+    }
+
+    void checkResult(final JsonNode result, final int runIndex, final int resultIndex) {
+        if (!result.isObject()) {
+            throw fail(path(runIndex, resultIndex, NONE, ""), "is not an object");
+        }
+        if (!result.path(ELEMENT_MESSAGE).isObject()) {
+            throw fail(path(runIndex, resultIndex, NONE, ".message"), "is not an object");
+        }
+        optionalText(result.path(ELEMENT_MESSAGE), ELEMENT_TEXT, runIndex, resultIndex, NONE, ".message.text");
+        optionalText(result, ELEMENT_RULE_ID, runIndex, resultIndex, NONE, ".ruleId");
+        optionalInt(result, ELEMENT_RULE_INDEX, -1, runIndex, resultIndex, NONE, ".ruleIndex");
+        final JsonNode rule = result.path(ELEMENT_RULE);
+        if (!rule.isMissingNode()) {
+            optionalInt(rule, ELEMENT_INDEX, -1, runIndex, resultIndex, NONE, ".rule.index");
+            optionalInt(rule.path(ELEMENT_TOOL_COMPONENT), ELEMENT_INDEX, -1, runIndex, resultIndex, NONE,
+                    ".rule.toolComponent.index");
+        }
+        optionalObject(result, ELEMENT_FINGERPRINTS, runIndex, resultIndex, ".fingerprints");
+        optionalObject(result, ELEMENT_PARTIAL_FINGERPRINTS, runIndex, resultIndex, ".partialFingerprints");
+
+        final JsonNode locations = result.path(ELEMENT_LOCATIONS);
+        if (locations.isMissingNode()) {
+            return;
+        }
+        if (!locations.isArray()) {
+            throw fail(path(runIndex, resultIndex, NONE, ".locations"), "is not an array");
+        }
+        for (int i = 0; i < locations.size(); i++) {
+            checkLocation(locations.get(i), runIndex, resultIndex, i);
+        }
+    }
+
+    private void checkLocation(final JsonNode location, final int runIndex, final int resultIndex,
+            final int locationIndex) {
+        if (!location.isObject()) {
+            throw fail(path(runIndex, resultIndex, locationIndex, ""), "is not an object");
+        }
+        final JsonNode physicalLocation = location.path(ELEMENT_PHYSICAL_LOCATION);
+        if (physicalLocation.isMissingNode()) {
+            return;
+        }
+        if (!physicalLocation.isObject()) {
+            throw fail(path(runIndex, resultIndex, locationIndex, ".physicalLocation"), "is not an object");
+        }
+        final JsonNode artifactLocation = physicalLocation.path(ELEMENT_ARTIFACT_LOCATION);
+        if (!artifactLocation.isMissingNode()) {
+            if (!artifactLocation.isObject()) {
+                throw fail(path(runIndex, resultIndex, locationIndex, ".physicalLocation.artifactLocation"),
+                        "is not an object");
+            }
+            optionalText(artifactLocation, ELEMENT_URI, runIndex, resultIndex, locationIndex,
+                    ".physicalLocation.artifactLocation.uri");
+            optionalText(artifactLocation, ELEMENT_URI_BASE_ID, runIndex, resultIndex, locationIndex,
+                    ".physicalLocation.artifactLocation.uriBaseId");
+            optionalInt(artifactLocation, ELEMENT_INDEX, -1, runIndex, resultIndex, locationIndex,
+                    ".physicalLocation.artifactLocation.index");
+        }
+        final JsonNode region = physicalLocation.path(ELEMENT_REGION);
+        if (!region.isMissingNode()) {
+            if (!region.isObject()) {
+                throw fail(path(runIndex, resultIndex, locationIndex, ".physicalLocation.region"),
+                        "is not an object");
+            }
+            optionalInt(region, ELEMENT_START_LINE, 1, runIndex, resultIndex, locationIndex,
+                    ".physicalLocation.region.startLine");
+            optionalInt(region, ELEMENT_END_LINE, 1, runIndex, resultIndex, locationIndex,
+                    ".physicalLocation.region.endLine");
+            optionalInt(region, ELEMENT_START_COLUMN, 1, runIndex, resultIndex, locationIndex,
+                    ".physicalLocation.region.startColumn");
+            optionalInt(region, ELEMENT_END_COLUMN, 1, runIndex, resultIndex, locationIndex,
+                    ".physicalLocation.region.endColumn");
+        }
+    }
+
+    private void checkRules(final JsonNode toolComponent, final int runIndex, final String where) {
+        final JsonNode rules = toolComponent.path(ELEMENT_RULES);
+        if (rules.isMissingNode()) {
+            return;
+        }
+        if (!rules.isArray()) {
+            throw fail(path(runIndex, NONE, NONE, where), "is not an array");
+        }
+        for (JsonNode rule : rules) {
+            checkRule(rule, runIndex, where);
+        }
+    }
+
+    void checkRule(final JsonNode rule, final int runIndex, final String where) {
+        if (!rule.isObject() || !rule.path(ELEMENT_ID).isTextual()) {
+            throw fail(path(runIndex, NONE, NONE, where + "[]"), "is not an object with a string id");
+        }
+    }
+
+    // A streamed log is not held as a tree, the stream parser checks its elements as they are read
+    void checkRuns(final boolean isArray) {
+        if (!isArray) {
+            throw fail(ELEMENT_RUNS, "is not an array");
+        }
+    }
+
+    void checkRootElement(final boolean isValid, final String where, final String problem) {
+        if (!isValid) {
+            throw fail(where, problem);
+        }
+    }
+
+    void checkRunElement(final boolean isValid, final int runIndex, final String where, final String problem) {
+        if (!isValid) {
+            throw fail(path(runIndex, NONE, NONE, where), problem);
+        }
+    }
+
+    private void optionalText(final JsonNode node, final String element, final int runIndex, final int resultIndex,
+            final int locationIndex, final String where) {
+        final JsonNode value = node.get(element);
+        if (value != null && !value.isTextual()) {
+            throw fail(path(runIndex, resultIndex, locationIndex, where), "is not a string");
+        }
+    }
+
+    private void optionalInt(final JsonNode node, final String element, final int min, final int runIndex,
+            final int resultIndex, final int locationIndex, final String where) {
+        final JsonNode value = node.get(element);
+        if (value != null && (!value.isIntegralNumber() || !value.canConvertToInt() || value.intValue() < min)) {
+            throw fail(path(runIndex, resultIndex, locationIndex, where), "is not an integer >= " + min);
+        }
+    }
+
+    private void optionalObject(final JsonNode node, final String element, final int runIndex,
+            final int resultIndex, final String where) {
+        final JsonNode value = node.get(element);
+        if (value != null && !value.isObject()) {
+            throw fail(path(runIndex, resultIndex, NONE, where), "is not an object");
+        }
+    }
+
+    private static String path(final int runIndex, final int resultIndex, final int locationIndex,
+            final String where) {
+        final StringBuilder path = new StringBuilder(ELEMENT_RUNS).append('[').append(runIndex).append(']');
+        if (resultIndex != NONE) {
+            path.append('.').append(ELEMENT_RESULTS).append('[').append(resultIndex).append(']');
+        }
+        if (locationIndex != NONE) {
+            path.append('.').append(ELEMENT_LOCATIONS).append('[').append(locationIndex).append(']');
+        }
+        return path.append(where).toString();
+    }
+
+    private IllegalArgumentException fail(final String path, final String problem) {
+        return new IllegalArgumentException(
+                String.format("Validation failed: %s Err: %s %s", sarifFile.getFileName(), path, problem));
+    }
+}
@@ -3,25 +3,51 @@
 // SPDX-License-Identifier: Apache-2.0
 package se.janderssonse.sariftool.cli;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
 import java.util.List;
-import java.util.logging.Logger;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Help.Visibility;
+import picocli.CommandLine.ITypeConverter;
 import picocli.CommandLine.Option;
+import se.janderssonse.sariftool.conf.LazyLogger;
+import se.janderssonse.sariftool.SarifModelFile;
 import se.janderssonse.sariftool.SarifParser;
 import se.janderssonse.sariftool.mapper.Mapper;
 import se.janderssonse.sariftool.mapper.MapperFactory;
 import se.janderssonse.sariftool.mapper.Mapper.MapperType;
+import se.janderssonse.sariftool.util.ConversionCache;
+import se.janderssonse.sariftool.util.ConversionMetrics;
+import se.janderssonse.sariftool.util.DirectoryWatcher;
+import se.janderssonse.sariftool.util.FileDiscovery;
+import se.janderssonse.sariftool.util.FileMetrics;
+import se.janderssonse.sariftool.util.FingerprintSet;
+import se.janderssonse.sariftool.util.IssueSink;
+import se.janderssonse.sariftool.util.MemoryBudget;
+import se.janderssonse.sariftool.util.OutputFormat;
+import se.janderssonse.sariftool.util.ShardedIssuesWriter;
 import se.janderssonse.sariftool.util.Util;
+import se.janderssonse.sariftool.util.ValidationMode;
 
 @Command(name = "convert", description = "Convert a SARIF file to another format", sortOptions = false)
 public final class ConvertCommand implements Runnable {
 
-    private static final Logger LOG = Logger.getLogger(SarifToolCLI.class.getName());
+    private static final LazyLogger LOG = LazyLogger.getLogger(SarifToolCLI.class);
+
+    static final String MERGED_NAME = "merged";
 
     @Option(names = { "-s", "--source(s)" }, required = true, description = "A /path/to/a/SARIF/dir/or/file.")
     private Path sourcePath;
@@ -29,48 +55,457 @@ public final class ConvertCommand implements Runnable {
     @Option(names = { "-o", "--output" }, required = true, description = "A /path/to/dir/for/output/.")
     private Path outputDir;
 
+    @Option(names = { "--include-glob" }, description = "A glob, relative to the source dir, of SARIF files to convert. Default: " + FileDiscovery.DEFAULT_INCLUDE)
+    private List<String> includeGlobs;
+
+    @Option(names = { "--exclude-glob" }, description = "A glob, relative to the source dir, of files or dirs not to convert.")
+    private List<String> excludeGlobs;
+
+    @Option(names = { "--max-depth" }, description = "Dir levels below the source dir to search, 1 for only the files in it.")
+    private int maxDepth = FileDiscovery.UNLIMITED_DEPTH;
+
     @Option(names = { "-t",
             "--tool" }, showDefaultValue = Visibility.ALWAYS, defaultValue = "sonar", description = "Only sonar custom issue supper atm.")
     private String tool;
 
     @Option(names = { "-e",
-            "--excludepath" }, showDefaultValue = Visibility.ALWAYS, defaultValue = "src/test", description = "A path to exclude")
+            "--excludepath" }, showDefaultValue = Visibility.ALWAYS, defaultValue = "src/test", description = "A path to exclude, as a regex or a glob prefixed with 'glob:'")
     private List<String> excludePaths;
 
+    @Option(names = { "-p", "--threads",
+            "--parallelism" }, showDefaultValue = Visibility.ALWAYS, description = "Number of SARIF files converted in parallel.")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = { "--compact" }, description = "Write the report without pretty printing.")
+    private boolean compact;
+
+    @Option(names = { "--gzip" }, description = "Write the report gzip compressed, as <name>.json.gz.")
+    private boolean gzip;
+
+    @Option(names = { "--cache-dir" }, description = "A /path/to/dir/for/cached/conversions/. Unchanged SARIF files are not converted again.")
+    private Path cacheDir;
+
+    @Option(names = { "--cache-size" }, showDefaultValue = Visibility.ALWAYS, defaultValue = "1024", description = "Max size of the conversion cache in MB.")
+    private long cacheSizeMb;
+
+    @Option(names = { "--cache-parsed" }, description = "With --cache-dir, also cache the parsed SARIF model, so a file converted again with other excludes or tool is not parsed again.")
+    private boolean cacheParsed;
+
+    @Option(names = { "--dedup" }, description = "Skip results already converted from another SARIF file, matched by fingerprint.")
+    private boolean dedup;
+
+    @Option(names = { "--merge" }, description = "Write the issues of all SARIF files to one report, " + MERGED_NAME + ".json.")
+    private boolean merge;
+
+    @Option(names = { "--shard-size" }, showDefaultValue = Visibility.ALWAYS, defaultValue = "0", description = "With --merge, split the report in shards of about this size in MB, 0 for a single report.")
+    private long shardSizeMb;
+
+    @Option(names = { "--watch" }, description = "Keep running and convert the SARIF files added to or changed in the source dir.")
+    private boolean watch;
+
+    @Option(names = { "--watch-quiet" }, showDefaultValue = Visibility.ALWAYS, defaultValue = "2000", description = "With --watch, milliseconds a file must be unchanged before it is converted.")
+    private long watchQuietMillis;
+
+    @Option(names = { "--validation" }, showDefaultValue = Visibility.ALWAYS, defaultValue = "full", converter = ValidationConverter.class, description = "full: against the SARIF schema, structural: only what the conversion reads, while parsing, none: trust the input.")
+    private ValidationMode validation;
+
+    @Option(names = { "--metrics" }, description = "Write per stage and per file timings and counts as JSON to this file, '-' for stdout.")
+    private Path metricsFile;
+
+    @Option(names = { "--metrics-prometheus" }, description = "Write the metrics in Prometheus text format to this file.")
+    private Path prometheusFile;
+
+    @Option(names = { "--max-memory" }, showDefaultValue = Visibility.ALWAYS, defaultValue = "0", description = "Heap in MB for parsed results, shared by the threads. Larger SARIF files are streamed and their results spilled to disk. 0 for no limit.")
+    private long maxMemoryMb;
+
+    @Option(names = { "--spill-dir" }, description = "With --max-memory, a /path/to/dir/for/spill/files/. Default: the system temp dir.")
+    private Path spillDir;
+
+    private ConversionCache cache;
+    private FingerprintSet convertedResults;
+    private ConversionMetrics metrics;
+    private MemoryBudget memoryBudget = MemoryBudget.UNLIMITED;
+    private final Queue<Path> failedFiles = new ConcurrentLinkedQueue<>();
+
     @Override
     public void run() {
 
-        fileToSarifParsers().stream()
-                .filter(parser -> parser.validated())
-                .forEach(parser -> getDefaultMappers(parser)
-                        .forEach(mapper -> mapper.map(targetPath(parser.sarifFile()),
-                                excludePaths)));
+        if (cacheDir != null) {
+            try {
+                cache = new ConversionCache(cacheDir, cacheSizeMb * 1024 * 1024);
+            } catch (IOException e) {
+                LOG.warning("Could not use cache dir %s, converting without cache: %s", cacheDir, e.getMessage());
+            }
+        }
+
+        if (cacheParsed && cacheDir == null) {
+            LOG.warning("--cache-parsed needs a --cache-dir, parsed models are not cached");
+        }
+
+        if (dedup) {
+            convertedResults = new FingerprintSet();
+        }
+
+        if (metricsFile != null || prometheusFile != null) {
+            metrics = new ConversionMetrics();
+        }
+
+        if (maxMemoryMb < 0) {
+            LOG.severe("Max memory can not be negative, was: %d", maxMemoryMb);
+            failedFiles.add(sourcePath);
+            return;
+        }
+        // Each file in flight gets its part of the budget
+        memoryBudget = MemoryBudget.ofMegabytes(maxMemoryMb, spillDir)
+                .share(Files.isRegularFile(sourcePath) ? 1 : threads);
+
+        if (watch) {
+            watchAndConvert();
+        } else {
+            convertSources();
+        }
+
+        if (metrics != null) {
+            writeMetrics();
+        }
+    }
+
+    /**
+     * The SARIF files, or the source, that could not be converted. A failed file is logged and the
+     * others are still converted, so the exit code does not show it.
+     */
+    List<Path> failedFiles() {
+        return List.copyOf(failedFiles);
+    }
+
+    // Calls the consumer with each SARIF file to convert, returns how many there were
+    private interface SarifFiles {
+        long forEach(Consumer<Path> consumer);
+    }
+
+    private void convertSources() {
+        if (merge) {
+            convertMerged();
+        } else {
+            convertAll(withUniqueTargets(this::discover), this::convert);
+        }
+    }
+
+    // The watcher is started before the first conversion, so no file added meanwhile is missed. Parser,
+    // schema and cache state stay warm in this JVM between the changes.
+    private void watchAndConvert() {
+        if (!Files.isDirectory(sourcePath)) {
+            LOG.severe("Watching needs a SARIF dir, was: %s", sourcePath.toAbsolutePath());
+            return;
+        }
+        if (dedup) {
+            LOG.severe("Watching can not be combined with --dedup, a changed file would be a duplicate of itself");
+            return;
+        }
+        try (DirectoryWatcher watcher = new DirectoryWatcher(sourcePath, fileDiscovery(), watchQuietMillis)) {
+            convertSources();
+            LOG.info("Watching %s for new or changed SARIF files", sourcePath.toAbsolutePath());
+            watcher.watch(changed -> {
+                if (merge) {
+                    convertMerged();
+                } else {
+                    convertAll(withUniqueTargets(consumer -> {
+                        changed.forEach(consumer);
+                        return changed.size();
+                    }), this::convert);
+                }
+                if (metrics != null) {
+                    writeMetrics();
+                }
+            });
+        } catch (IOException e) {
+            LOG.severe("Could not watch %s: %s", sourcePath, e.getMessage());
+        }
+    }
+
+    // Each report is claimed while the files are discovered, so two files never write one report at the same time
+    private SarifFiles withUniqueTargets(final SarifFiles sarifFiles) {
+        final Map<Path, Path> claimed = new HashMap<>();
+        return consumer -> sarifFiles.forEach(sarifFile -> {
+            final Path other = claimed.putIfAbsent(targetPath(sarifFile), sarifFile);
+            if (other != null) {
+                LOG.severe("Not converting %s, its report %s is written from %s", sarifFile, targetPath(sarifFile),
+                        other);
+                failedFiles.add(sarifFile);
+                return;
+            }
+            consumer.accept(sarifFile);
+        });
     }
 
-    private List<SarifParser> fileToSarifParsers() {
-        return sarifPaths(sourcePath).stream().map(sarifFile -> new SarifParser(sarifFile)).toList();
+    private long convertAll(final SarifFiles sarifFiles, final Consumer<Path> conversion) {
+        if (threads <= 1 || Files.isRegularFile(sourcePath)) {
+            return sarifFiles.forEach(conversion);
+        }
+        return convertInParallel(sarifFiles, conversion);
+    }
+
+    // Each file is parsed, validated, mapped and written as its own task, submitted as soon as it is
+    // discovered. The semaphore keeps at most 'threads' files in flight, so only those are held in memory,
+    // and holds the walk back while they are.
+    private long convertInParallel(final SarifFiles sarifFiles, final Consumer<Path> conversion) {
+        final ExecutorService executor = Executors.newWorkStealingPool(threads);
+        final Semaphore inFlight = new Semaphore(threads);
+        long discovered = 0;
+        try {
+            discovered = sarifFiles.forEach(sarifFile -> {
+                inFlight.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        conversion.accept(sarifFile);
+                    } catch (RuntimeException e) {
+                        LOG.severe("Failed converting %s: %s", sarifFile, e);
+                        failedFiles.add(sarifFile);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            });
+            inFlight.acquire(threads);
+        } catch (InterruptedException e) {
+            LOG.warning("Conversion interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+        return discovered;
+    }
+
+    private void convert(final Path sarifFile) {
+        final FileMetrics fileMetrics = startMetrics(sarifFile);
+        try {
+            final Path target = targetPath(sarifFile);
+            // While watching, the report can be read at any time, so it is written aside and moved into place
+            final Path written = watch ? target.resolveSibling(target.getFileName() + ".tmp") : target;
+            final String cacheKey = cacheKey(sarifFile);
+            if (cacheKey != null && createReportDir(target) && cache.restore(cacheKey, written)
+                    && publish(written, target)) {
+                LOG.info("Reused cached conversion of %s for %s", sarifFile, target);
+                fileMetrics.markCached();
+                fileMetrics.addBytesWritten(target.toFile().length());
+                return;
+            }
+
+            try (SarifParser parser = parse(sarifFile, fileMetrics)) {
+                if (!parser.validated() || !createReportDir(target)) {
+                    failedFiles.add(sarifFile);
+                    return;
+                }
+                getDefaultMappers(parser).forEach(mapper -> mapper.map(written, excludePaths, outputFormat()));
+                // A report that could not be written is removed
+                if (!Files.isRegularFile(written) || !publish(written, target)) {
+                    failedFiles.add(sarifFile);
+                } else if (cacheKey != null) {
+                    cache.store(cacheKey, target);
+                }
+            }
+        } finally {
+            finishMetrics(fileMetrics);
+        }
+    }
+
+    private void convertMerged() {
+        List<Path> shards = List.of();
+        try {
+            Files.createDirectories(outputDir);
+            try (ShardedIssuesWriter writer = new ShardedIssuesWriter(outputDir, MERGED_NAME, outputFormat(),
+                    shardSizeMb * 1024 * 1024)) {
+                final long sarifFiles = convertAll(this::discover, sarifFile -> convertInto(sarifFile, writer));
+                LOG.info("Merged %d SARIF files, issues '%d', reports '%s'", sarifFiles, writer.count(),
+                        writer.shards().size());
+                shards = writer.shards();
+            }
+        } catch (IOException e) {
+            LOG.severe("Could not write merged report to %s: %s", outputDir, e.getMessage());
+            failedFiles.add(sourcePath);
+        }
+        if (metrics != null) {
+            metrics.setReportBytes(shards.stream().mapToLong(shard -> shard.toFile().length()).sum());
+        }
+    }
+
+    private void convertInto(final Path sarifFile, final IssueSink sink) {
+        final FileMetrics fileMetrics = startMetrics(sarifFile);
+        try {
+            try (SarifParser parser = parse(sarifFile, fileMetrics)) {
+                if (!parser.validated()) {
+                    failedFiles.add(sarifFile);
+                    return;
+                }
+                for (Mapper mapper : getDefaultMappers(parser)) {
+                    try {
+                        mapper.map(sink, excludePaths);
+                    } catch (IOException e) {
+                        LOG.severe("Could not write issues of %s: %s", sarifFile, e.getMessage());
+                        failedFiles.add(sarifFile);
+                    }
+                }
+            }
+        } finally {
+            finishMetrics(fileMetrics);
+        }
+    }
+
+    // A model cached by an earlier conversion is mapped instead of parsing the SARIF file again
+    private SarifParser parse(final Path sarifFile, final FileMetrics fileMetrics) {
+        final String modelKey = modelKey(sarifFile);
+        if (modelKey != null) {
+            final Optional<Path> model = cache.lookup(modelKey);
+            if (model.isPresent()) {
+                try {
+                    LOG.info("Reused cached model of %s", sarifFile);
+                    return SarifParser.fromModel(sarifFile, model.get(), fileMetrics);
+                } catch (IOException | RuntimeException e) {
+                    LOG.warning("Could not read cached model of %s, parsing it: %s", sarifFile, e.getMessage());
+                }
+            }
+        }
+
+        final SarifParser parser = new SarifParser(sarifFile, fileMetrics, validation, memoryBudget);
+        // Writing a streamed model would read all its results back into memory
+        if (modelKey != null && parser.validated() && !parser.streamed()) {
+            cache.store(modelKey, sarifFile.toString(), entry -> SarifModelFile.write(parser, entry));
+        }
+        return parser;
+    }
+
+    // Only what the parsing depends on, the model is the same for any tool, excludes or output format
+    private String modelKey(final Path sarifFile) {
+        if (cache == null || !cacheParsed) {
+            return null;
+        }
+        try {
+            return cache.key(sarifFile, SarifToolCLI.VERSION, "model", validation.name());
+        } catch (IOException e) {
+            LOG.warning("Could not compute cache key for %s: %s", sarifFile, e.getMessage());
+            return null;
+        }
+    }
+
+    private FileMetrics startMetrics(final Path sarifFile) {
+        return metrics != null ? metrics.start(sarifFile) : new FileMetrics(sarifFile);
     }
 
-    private List<Path> sarifPaths(final Path sourceFile) {
+    private void finishMetrics(final FileMetrics fileMetrics) {
+        if (metrics != null) {
+            metrics.finish(fileMetrics);
+        }
+    }
 
-        if (Files.isRegularFile(sourceFile)) {
-            return List.of(sourceFile);
-        } else if (Files.isDirectory(sourceFile)) {
-            return Util.findFiles(sourceFile, "sarif");
+    private void writeMetrics() {
+        try {
+            if (metricsFile != null) {
+                final String json = metrics.toJson();
+                if ("-".equals(metricsFile.toString())) {
+                    System.out.println(json);
+                } else {
+                    Files.writeString(metricsFile, json);
+                }
+            }
+            if (prometheusFile != null) {
+                Files.writeString(prometheusFile, metrics.toPrometheus());
+            }
+        } catch (IOException e) {
+            LOG.severe("Could not write metrics: %s", e.getMessage());
+        }
+    }
+
+    // Everything that changes the output besides the file content is part of the key
+    private String cacheKey(final Path sarifFile) {
+        // With dedup the output depends on the other files, so it can not be cached
+        if (cache == null || dedup) {
+            return null;
+        }
+        try {
+            return cache.key(sarifFile, SarifToolCLI.VERSION, tool.toUpperCase(),
+                    excludePaths.stream().sorted().collect(Collectors.joining("\n")),
+                    outputFormat().toString(), validation.name(), String.valueOf(memoryBudget.limited()));
+        } catch (IOException e) {
+            LOG.warning("Could not compute cache key for %s: %s", sarifFile, e.getMessage());
+            return null;
+        }
+    }
+
+    // Files are passed on while the source dir is still being searched
+    private long discover(final Consumer<Path> conversion) {
+
+        if (Files.isRegularFile(sourcePath)) {
+            conversion.accept(sourcePath);
+            return 1;
+        } else if (Files.isDirectory(sourcePath)) {
+            try {
+                return fileDiscovery().discover(sourcePath, conversion);
+            } catch (IOException e) {
+                LOG.severe("Could not search %s: %s", sourcePath, e.getMessage());
+                failedFiles.add(sourcePath);
+                return 0;
+            }
         } else {
-            LOG.info(String.format("Input incorrect, was: %s. Please add a path to a valid SARIF dir or file.",
-                    sourceFile.toAbsolutePath()));
-            return List.of();
+            LOG.info("Input incorrect, was: %s. Please add a path to a valid SARIF dir or file.",
+                    sourcePath.toAbsolutePath());
+            failedFiles.add(sourcePath);
+            return 0;
         }
     }
 
+    private FileDiscovery fileDiscovery() {
+        return new FileDiscovery(includeGlobs, excludeGlobs, maxDepth);
+    }
+
+    // Reports mirror the dirs below the source dir, so same named SARIF files in different dirs get their own
     private Path targetPath(final Path sarifFile) {
-        return Paths.get(outputDir.toString(), Util.removeFileExtension(sarifFile, true).concat(".json"));
+        final Path subDir = Files.isDirectory(sourcePath) ? sourcePath.relativize(sarifFile).getParent() : null;
+        final Path reportDir = subDir == null ? outputDir : outputDir.resolve(subDir);
+        return reportDir.resolve(Util.removeFileExtension(sarifFile, true).concat(outputFormat().fileSuffix()));
+    }
+
+    private boolean publish(final Path written, final Path target) {
+        if (written.equals(target)) {
+            return true;
+        }
+        try {
+            Files.move(written, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            LOG.severe("Could not move report %s into place: %s", target, e.getMessage());
+            try {
+                Files.deleteIfExists(written);
+            } catch (IOException ignored) {
+                // left for the next conversion to replace
+            }
+            return false;
+        }
+    }
+
+    private boolean createReportDir(final Path target) {
+        try {
+            Files.createDirectories(target.getParent());
+            return true;
+        } catch (IOException e) {
+            LOG.severe("Could not create report dir %s: %s", target.getParent(), e.getMessage());
+            return false;
+        }
+    }
+
+    private OutputFormat outputFormat() {
+        return new OutputFormat(!compact, gzip);
     }
 
     private List<Mapper> getDefaultMappers(final SarifParser parser) {
         MapperType format = MapperType.valueOf(tool.toUpperCase());
-        Mapper sonarIssueMapper = MapperFactory.getMapper(format, parser);
+        Mapper sonarIssueMapper = MapperFactory.getMapper(format, parser, convertedResults);
         return List.of(sonarIssueMapper);
     }
+
+    static final class ValidationConverter implements ITypeConverter<ValidationMode> {
+        @Override
+        public ValidationMode convert(final String value) {
+            return ValidationMode.of(value);
+        }
+    }
 }
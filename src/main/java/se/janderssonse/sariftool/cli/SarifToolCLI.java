@@ -7,12 +7,16 @@ import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Help.Ansi.Style;
 import picocli.CommandLine.Help.ColorScheme;
+import se.janderssonse.sariftool.conf.JavaLoggingConf;
 
-@Command(name = "sariftool", subcommands = { ConvertCommand.class,
-        CommandLine.HelpCommand.class }, mixinStandardHelpOptions = true, version = "0.0.1", description = "SARIF tool in early phase", sortOptions = false)
+@Command(name = "sariftool", subcommands = { ConvertCommand.class, ServeCommand.class,
+        CommandLine.HelpCommand.class }, mixinStandardHelpOptions = true, version = SarifToolCLI.VERSION, description = "SARIF tool in early phase", sortOptions = false)
 public class SarifToolCLI {
 
+    public static final String VERSION = "0.0.1";
+
     public static void main(final String... args) {
+        JavaLoggingConf.configure();
         int exitCode = new CommandLine(new SarifToolCLI()).execute(args);
         System.exit(exitCode);
     }
@@ -0,0 +1,279 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.cli;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.ExitCode;
+import picocli.CommandLine.Help.Visibility;
+import picocli.CommandLine.Model.OptionSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParseResult;
+import picocli.CommandLine.PicocliException;
+import se.janderssonse.sariftool.conf.LazyLogger;
+import se.janderssonse.sariftool.util.JsonWrapper;
+import se.janderssonse.sariftool.util.Util;
+
+/**
+ * Keeps one warm JVM converting SARIF files on request, so the JVM start, class loading, schema
+ * compilation and JIT warm-up are paid once instead of per file. Listens on localhost only.
+ *
+ * POST /convert takes a JSON array of convert arguments, e.g. ["-s=/abs/a.sarif", "-o=/abs/out"], and
+ * answers {"exitCode": 0, "failed": []} when the conversion is done, with a non zero exit code and the
+ * SARIF files that could not be converted when any failed. GET /health answers when the server is up,
+ * POST /shutdown stops it, once the conversions already accepted are done. Relative paths are resolved
+ * against the working directory of the server.
+ *
+ * Any local process, or web page through the browser, can reach localhost, so /convert and /shutdown
+ * need the token made at each start, as 'Authorization: Bearer &lt;token&gt;', and /convert a JSON
+ * content type. Only the convert options in {@link #ALLOWED_OPTIONS} are accepted, the others write
+ * other files than the reports or never return.
+ */
+@Command(name = "serve", description = "Serve conversions over HTTP on localhost from a warm process", sortOptions = false)
+public final class ServeCommand implements Runnable {
+
+    private static final LazyLogger LOG = LazyLogger.getLogger(SarifToolCLI.class);
+
+    private static final int OK = 200;
+    private static final int BAD_REQUEST = 400;
+    private static final int UNAUTHORIZED = 401;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int UNSUPPORTED_MEDIA_TYPE = 415;
+    private static final int UNAVAILABLE = 503;
+
+    private static final int TOKEN_BYTES = 32;
+    // For the answers already written to finish sending
+    private static final int EXCHANGE_GRACE_SECONDS = 1;
+    private static final String JSON = "application/json";
+
+    static final Set<String> ALLOWED_OPTIONS = Set.of("--source(s)", "--output", "--include-glob", "--exclude-glob",
+            "--max-depth", "--tool", "--excludepath", "--threads", "--compact", "--gzip", "--dedup", "--merge",
+            "--shard-size", "--validation", "--max-memory");
+
+    @Option(names = { "--port" }, showDefaultValue = Visibility.ALWAYS, defaultValue = "8787", description = "Port on localhost to listen on, 0 for any free port.")
+    private int port;
+
+    @Option(names = { "-w", "--workers" }, showDefaultValue = Visibility.ALWAYS, description = "Number of conversion requests processed at the same time.")
+    private int workers = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = { "--queue" }, showDefaultValue = Visibility.ALWAYS, defaultValue = "64", description = "Number of requests waiting for a worker before new ones are refused.")
+    private int queueSize;
+
+    @Option(names = { "--shutdown-timeout" }, showDefaultValue = Visibility.ALWAYS, defaultValue = "60", description = "Seconds to wait at shutdown for the conversions already accepted to finish.")
+    private long shutdownTimeout;
+
+    @Option(names = { "--token-file" }, description = "Write the token requests must send to this file, readable by its owner only. Default: the token is logged at start.")
+    private Path tokenFile;
+
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private String token;
+    private HttpServer server;
+    private ThreadPoolExecutor pool;
+
+    @Override
+    public void run() {
+        try {
+            start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+            stopped.await();
+        } catch (IOException e) {
+            LOG.severe("Could not serve on port %d: %s", port, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stop();
+        }
+    }
+
+    int start() throws IOException {
+        final long begin = System.nanoTime();
+        Util.preloadSchema();
+        JsonWrapper.preload();
+        token = newToken();
+        if (tokenFile != null) {
+            writeToken(tokenFile, token);
+        }
+
+        pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize));
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/health", exchange -> respond(exchange, OK, "{\"status\":\"ok\"}"));
+        server.createContext("/convert", this::handleConvert);
+        server.createContext("/shutdown", this::handleShutdown);
+        server.start();
+
+        LOG.info("Serving on http://localhost:%d with %d workers, ready in %d ms", boundPort(), workers,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+        if (tokenFile == null) {
+            LOG.info("Requests must send 'Authorization: Bearer %s'", token);
+        }
+        return boundPort();
+    }
+
+    String token() {
+        return token;
+    }
+
+    int boundPort() {
+        return server.getAddress().getPort();
+    }
+
+    int running() {
+        return pool.getActiveCount() + pool.getQueue().size();
+    }
+
+    // New conversions are refused, those running or queued are finished and answered before the server stops
+    synchronized void stop() {
+        if (server != null) {
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(shutdownTimeout, TimeUnit.SECONDS)) {
+                    LOG.warning("Stopping with %d conversions not done after %d s", running(), shutdownTimeout);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            server.stop(EXCHANGE_GRACE_SECONDS);
+            server = null;
+            stopped.countDown();
+        }
+    }
+
+    private void handleShutdown(final HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, METHOD_NOT_ALLOWED, "{\"error\":\"POST to stop the server\"}");
+            return;
+        }
+        if (!authorized(exchange)) {
+            respond(exchange, UNAUTHORIZED, "{\"error\":\"missing or wrong token\"}");
+            return;
+        }
+        respond(exchange, OK, "{\"status\":\"stopping\"}");
+        stopped.countDown();
+    }
+
+    // The HTTP dispatcher thread only reads the request, the conversion is done by the bounded pool
+    private void handleConvert(final HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, METHOD_NOT_ALLOWED, "{\"error\":\"POST a JSON array of convert arguments\"}");
+            return;
+        }
+        if (!authorized(exchange)) {
+            respond(exchange, UNAUTHORIZED, "{\"error\":\"missing or wrong token\"}");
+            return;
+        }
+        // A browser can only send a JSON content type cross origin after a preflight, which is never allowed
+        final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith(JSON)) {
+            respond(exchange, UNSUPPORTED_MEDIA_TYPE, "{\"error\":\"Content-Type must be " + JSON + "\"}");
+            return;
+        }
+
+        final String[] args;
+        try (InputStream body = exchange.getRequestBody()) {
+            args = checkOptions(toArguments(body));
+        } catch (IOException | IllegalArgumentException | PicocliException e) {
+            respond(exchange, BAD_REQUEST, "{\"error\":" + JsonWrapper.toJson(String.valueOf(e.getMessage())) + "}");
+            return;
+        }
+
+        try {
+            pool.execute(() -> {
+                try {
+                    final ConvertCommand convert = new ConvertCommand();
+                    final int exitCode = new CommandLine(convert).execute(args);
+                    final List<String> failed = convert.failedFiles().stream().map(Path::toString).toList();
+                    respond(exchange, OK, "{\"exitCode\":" + (exitCode == 0 && !failed.isEmpty() ? ExitCode.SOFTWARE
+                            : exitCode) + ",\"failed\":" + JsonWrapper.toJson(failed) + "}");
+                } catch (IOException e) {
+                    LOG.warning("Could not answer conversion request: %s", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            respond(exchange, UNAVAILABLE, "{\"error\":\"too many requests waiting\"}");
+        }
+    }
+
+    private boolean authorized(final HttpExchange exchange) {
+        final String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        return authorization != null && MessageDigest.isEqual(authorization.getBytes(StandardCharsets.UTF_8),
+                ("Bearer " + token).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Parsed as the convert command would, so '--metrics=x', '--metrics x' and abbreviations are all seen
+    static String[] checkOptions(final String[] args) {
+        final ParseResult parsed = new CommandLine(new ConvertCommand()).parseArgs(args);
+        for (OptionSpec option : parsed.matchedOptions()) {
+            if (Arrays.stream(option.names()).noneMatch(ALLOWED_OPTIONS::contains)) {
+                throw new IllegalArgumentException("Option not allowed over HTTP: " + option.longestName());
+            }
+        }
+        return args;
+    }
+
+    private static String newToken() {
+        final byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private static void writeToken(final Path file, final String value) throws IOException {
+        Files.deleteIfExists(file);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        Files.writeString(file, value);
+    }
+
+    private static String[] toArguments(final InputStream body) throws IOException {
+        final JsonNode node = JsonWrapper.toNode(body);
+        if (node == null || !node.isArray()) {
+            throw new IllegalArgumentException("Expected a JSON array of convert arguments");
+        }
+        final List<String> args = new ArrayList<>();
+        for (JsonNode arg : node) {
+            if (!arg.isTextual()) {
+                throw new IllegalArgumentException("Expected only string arguments, got " + arg);
+            }
+            args.add(arg.asText());
+        }
+        return args.toArray(new String[0]);
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String json) throws IOException {
+        final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -8,12 +8,21 @@ import java.util.logging.LogManager;
 
 import se.janderssonse.sariftool.cli.SarifToolCLI;
 
-public class JavaLoggingConf {
+public final class JavaLoggingConf {
 
-    static {
-        try {
-            InputStream stream = SarifToolCLI.class.getClassLoader()
-                    .getResourceAsStream("logging.properties");
+    private JavaLoggingConf() {
+    }
+
+    /**
+     * Reads logging.properties from the classpath, unless a configuration is given with
+     * -Djava.util.logging.config.file.
+     */
+    public static void configure() {
+        if (System.getProperty("java.util.logging.config.file") != null) {
+            return;
+        }
+        try (InputStream stream = SarifToolCLI.class.getClassLoader()
+                .getResourceAsStream("logging.properties")) {
             LogManager.getLogManager().readConfiguration(stream);
 
             // GRAALVM throws java.home err for native image, TO-DO
@@ -0,0 +1,81 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.conf;
+
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * java.util.logging logger, configured by {@link JavaLoggingConf}, that only builds a message when its
+ * level is enabled. Messages are format strings with arguments, or suppliers for anything costly, so
+ * e.g. a toString of a large report never runs for a disabled FINE message.
+ */
+public final class LazyLogger {
+
+    private final Logger logger;
+
+    private LazyLogger(final Logger logger) {
+        this.logger = logger;
+    }
+
+    public static LazyLogger getLogger(final Class<?> type) {
+        return getLogger(type.getName());
+    }
+
+    public static LazyLogger getLogger(final String name) {
+        return new LazyLogger(Logger.getLogger(name));
+    }
+
+    public boolean isLoggable(final Level level) {
+        return logger.isLoggable(level);
+    }
+
+    public void fine(final String format, final Object... args) {
+        log(Level.FINE, format, args);
+    }
+
+    public void fine(final Supplier<String> message) {
+        log(Level.FINE, message);
+    }
+
+    public void info(final String format, final Object... args) {
+        log(Level.INFO, format, args);
+    }
+
+    public void info(final Supplier<String> message) {
+        log(Level.INFO, message);
+    }
+
+    public void warning(final String format, final Object... args) {
+        log(Level.WARNING, format, args);
+    }
+
+    public void severe(final String format, final Object... args) {
+        log(Level.SEVERE, format, args);
+    }
+
+    // Without arguments the message is logged as is, it may contain a '%' such as in %SRCROOT%
+    private void log(final Level level, final String format, final Object... args) {
+        if (logger.isLoggable(level)) {
+            final StackWalker.StackFrame caller = caller();
+            logger.logp(level, caller.getClassName(), caller.getMethodName(),
+                    args.length == 0 ? format : String.format(format, args));
+        }
+    }
+
+    private void log(final Level level, final Supplier<String> message) {
+        if (logger.isLoggable(level)) {
+            final StackWalker.StackFrame caller = caller();
+            logger.logp(level, caller.getClassName(), caller.getMethodName(), message);
+        }
+    }
+
+    // JUL would infer this class as the source of every record, the caller is the first frame outside it
+    private static StackWalker.StackFrame caller() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> !frame.getClassName().equals(LazyLogger.class.getName()))
+                .findFirst()).orElseThrow();
+    }
+}
@@ -4,12 +4,22 @@
 
 package se.janderssonse.sariftool.mapper;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
 
+import se.janderssonse.sariftool.util.IssueSink;
+import se.janderssonse.sariftool.util.OutputFormat;
+
 public interface Mapper {
 
-    void map(Path targetPath, List<String> excludePaths);
+    default void map(Path targetPath, List<String> excludePaths) {
+        map(targetPath, excludePaths, OutputFormat.DEFAULT);
+    }
+
+    void map(Path targetPath, List<String> excludePaths, OutputFormat format);
+
+    void map(IssueSink sink, List<String> excludePaths) throws IOException;
 
     enum MapperType {
         SONAR,
@@ -4,6 +4,7 @@
 package se.janderssonse.sariftool.mapper;
 
 import se.janderssonse.sariftool.SarifParser;
+import se.janderssonse.sariftool.util.FingerprintSet;
 
 public final class MapperFactory {
 
@@ -11,8 +12,13 @@ public final class MapperFactory {
     }
 
     public static Mapper getMapper(final Mapper.MapperType type, final SarifParser parser) {
+        return getMapper(type, parser, null);
+    }
+
+    public static Mapper getMapper(final Mapper.MapperType type, final SarifParser parser,
+            final FingerprintSet convertedResults) {
         return switch (type) {
-            case SONAR -> new SonarMapper(parser);
+            case SONAR -> new SonarMapper(parser, convertedResults);
         };
     }
 
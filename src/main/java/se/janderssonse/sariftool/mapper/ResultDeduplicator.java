@@ -0,0 +1,60 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package se.janderssonse.sariftool.mapper;
+
+import se.janderssonse.sariftool.model.sarif.ResultView;
+import se.janderssonse.sariftool.util.FingerprintSet;
+import se.janderssonse.sariftool.util.Hash64;
+
+/**
+ * Drops results already seen in an earlier run, e.g. the same finding reported by several runs of a
+ * matrix build. Results repeated within one run are kept, as the tool reported them so.
+ * Results are the same when the tool, the resolved rule id, the message and the locations are.
+ * Only a 64 bit hash of each result is kept, not the result, so results can be read through a
+ * {@link se.janderssonse.sariftool.model.sarif.ResultCursor} or back from disk. Every check is a hash
+ * lookup, so deduplication is linear in the number of results.
+ */
+final class ResultDeduplicator {
+
+    private final FingerprintSet seen = new FingerprintSet();
+    // Those of the seen results first seen in the current run
+    private FingerprintSet seenInRun = new FingerprintSet();
+
+    boolean firstSeen(final String engine, final String ruleId, final ResultView result) {
+        final long hash = hash(engine, ruleId, result);
+        if (seenInRun.contains(hash)) {
+            return true;
+        }
+        if (seen.add(hash)) {
+            seenInRun.add(hash);
+            return true;
+        }
+        return false;
+    }
+
+    void endRun() {
+        seenInRun = new FingerprintSet();
+    }
+
+    int size() {
+        return seen.size();
+    }
+
+    // A collision drops a result, at 64 bits that is unlikely
+    private static long hash(final String engine, final String ruleId, final ResultView result) {
+        long hash = Hash64.hash(Hash64.hash(Hash64.SEED, engine), ruleId);
+        hash = Hash64.hash(hash, result.message());
+        for (int i = 0; i < result.locationCount(); i++) {
+            hash = Hash64.hash(hash, result.uri(i));
+            hash = Hash64.hash(hash, result.uriBaseId(i));
+            hash = Hash64.hash(hash, result.index(i));
+            hash = Hash64.hash(hash, result.startLine(i));
+            hash = Hash64.hash(hash, result.endLine(i));
+            hash = Hash64.hash(hash, result.startColumn(i));
+            hash = Hash64.hash(hash, result.endColumn(i));
+        }
+        return hash;
+    }
+}
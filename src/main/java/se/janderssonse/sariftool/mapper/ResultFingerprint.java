@@ -0,0 +1,36 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package se.janderssonse.sariftool.mapper;
+
+import se.janderssonse.sariftool.model.sarif.CompactResult;
+import se.janderssonse.sariftool.model.sarif.ResultView;
+import se.janderssonse.sariftool.util.Hash64;
+
+/**
+ * 64 bit fingerprint identifying a result across SARIF files. Uses the SARIF fingerprints of the
+ * result when the tool wrote any, or its partialFingerprints with the uri of its primary location,
+ * otherwise the rule id, primary location and message.
+ */
+final class ResultFingerprint {
+
+    private ResultFingerprint() {
+    }
+
+    static long of(final String ruleId, final ResultView result) {
+        long hash = Hash64.hash(Hash64.SEED, ruleId);
+        if (result.fingerprint() != CompactResult.NO_FINGERPRINT) {
+            hash = Hash64.hash(hash, (int) (result.fingerprint() >>> Integer.SIZE));
+            return Hash64.hash(hash, (int) result.fingerprint());
+        }
+        if (result.locationCount() > 0) {
+            hash = Hash64.hash(hash, result.uri(0));
+            hash = Hash64.hash(hash, result.startLine(0));
+            hash = Hash64.hash(hash, result.endLine(0));
+            hash = Hash64.hash(hash, result.startColumn(0));
+            hash = Hash64.hash(hash, result.endColumn(0));
+        }
+        return Hash64.hash(hash, result.message());
+    }
+}
@@ -0,0 +1,118 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package se.janderssonse.sariftool.mapper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import se.janderssonse.sariftool.model.sarif.CompactResult;
+import se.janderssonse.sariftool.model.sarif.Result;
+import se.janderssonse.sariftool.model.sarif.ResultView;
+import se.janderssonse.sariftool.model.sarif.Rule;
+import se.janderssonse.sariftool.model.sarif.Run;
+import se.janderssonse.sariftool.model.sonar.Issue;
+
+/**
+ * Rule lookup for the results of a run, by ruleIndex when it points at a matching rule in the driver,
+ * or in the extension given by the result's toolComponent, otherwise by rule id.
+ * The Sonar severity of every rule is resolved once when the index is built.
+ */
+final class RuleIndex {
+
+    private static final Optional<Issue.Severity> DEFAULT_SEVERITY = Optional.of(Issue.Severity.INFO);
+
+    private final List<Rule> rules;
+    // Start of each rule table in rules, the driver's first, then one per extension
+    private final int[] offsets;
+    private final Map<String, Integer> positionById;
+    private final List<Optional<Issue.Severity>> severities;
+
+    RuleIndex(final List<Rule> rules) {
+        this(new Run(Optional.empty(), rules, List.of(), List.of()));
+    }
+
+    RuleIndex(final Run run) {
+        final List<List<Rule>> tables = run.ruleTables();
+        this.rules = run.allRules();
+        this.offsets = new int[tables.size() + 1];
+        for (int i = 0; i < tables.size(); i++) {
+            offsets[i + 1] = offsets[i] + tables.get(i).size();
+        }
+        this.positionById = new HashMap<>(rules.size() * 2);
+        this.severities = new ArrayList<>(rules.size());
+
+        for (int i = 0; i < rules.size(); i++) {
+            final Rule rule = rules.get(i);
+            if (rule.id().isPresent()) {
+                positionById.putIfAbsent(rule.id().get(), i);
+            }
+            severities.add(toSeverity(rule));
+        }
+    }
+
+    Optional<Rule> rule(final Result result) {
+        return rule(result.ruleId().orElse(null), result.ruleIndex().orElse(CompactResult.NONE));
+    }
+
+    Optional<String> ruleId(final Result result) {
+        return ruleId(result.ruleId().orElse(null), result.ruleIndex().orElse(CompactResult.NONE));
+    }
+
+    Optional<Issue.Severity> severity(final Result result) {
+        return severity(result.ruleId().orElse(null), result.ruleIndex().orElse(CompactResult.NONE));
+    }
+
+    Optional<String> ruleId(final ResultView result) {
+        if (result.ruleId() != null) {
+            return Optional.of(result.ruleId());
+        }
+        final int position = position(null, result.ruleIndex(), result.toolComponent());
+        return position < 0 ? Optional.empty() : rules.get(position).id();
+    }
+
+    Optional<Issue.Severity> severity(final ResultView result) {
+        final int position = position(result.ruleId(), result.ruleIndex(), result.toolComponent());
+        return position < 0 ? DEFAULT_SEVERITY : severities.get(position);
+    }
+
+    Optional<Rule> rule(final String ruleId, final int ruleIndex) {
+        final int position = position(ruleId, ruleIndex, CompactResult.NONE);
+        return position < 0 ? Optional.empty() : Optional.of(rules.get(position));
+    }
+
+    Optional<String> ruleId(final String ruleId, final int ruleIndex) {
+        return ruleId != null ? Optional.of(ruleId) : rule(null, ruleIndex).flatMap(Rule::id);
+    }
+
+    Optional<Issue.Severity> severity(final String ruleId, final int ruleIndex) {
+        final int position = position(ruleId, ruleIndex, CompactResult.NONE);
+        return position < 0 ? DEFAULT_SEVERITY : severities.get(position);
+    }
+
+    private int position(final String ruleId, final int ruleIndex, final int toolComponent) {
+        final int table = toolComponent == CompactResult.NONE ? 0 : toolComponent + 1;
+        if (table >= 0 && table < offsets.length - 1
+                && ruleIndex >= 0 && ruleIndex < offsets[table + 1] - offsets[table]) {
+            final int position = offsets[table] + ruleIndex;
+            if (ruleId == null || ruleId.equals(rules.get(position).id().orElse(null))) {
+                return position;
+            }
+        }
+        if (ruleId != null) {
+            return positionById.getOrDefault(ruleId, -1);
+        }
+        return -1;
+    }
+
+    private static Optional<Issue.Severity> toSeverity(final Rule rule) {
+        if (rule.properties().isPresent() && rule.properties().get().severity().isPresent()) {
+            return Issue.toSeverityBasedOnRulePropSeverity(rule.level(), rule.properties().get());
+        }
+        return DEFAULT_SEVERITY;
+    }
+}
@@ -5,35 +5,52 @@
 
 package se.janderssonse.sariftool.mapper;
 
+import se.janderssonse.sariftool.conf.LazyLogger;
 import se.janderssonse.sariftool.SarifParser;
-import se.janderssonse.sariftool.model.sarif.Location;
-import se.janderssonse.sariftool.model.sarif.Region;
-import se.janderssonse.sariftool.model.sarif.Result;
-import se.janderssonse.sariftool.model.sarif.Rule;
+import se.janderssonse.sariftool.model.sarif.CompactResult;
+import se.janderssonse.sariftool.model.sarif.ResultCursor;
+import se.janderssonse.sariftool.model.sarif.ResultStore;
+import se.janderssonse.sariftool.model.sarif.ResultView;
+import se.janderssonse.sariftool.model.sarif.Run;
 import se.janderssonse.sariftool.model.sonar.Issue;
-import se.janderssonse.sariftool.model.sonar.Issues;
 import se.janderssonse.sariftool.model.sonar.SonarLocation;
 import se.janderssonse.sariftool.model.sonar.TextRange;
+import se.janderssonse.sariftool.util.FileMetrics;
+import se.janderssonse.sariftool.util.FileMetrics.Stage;
+import se.janderssonse.sariftool.util.FingerprintSet;
+import se.janderssonse.sariftool.util.IssueSink;
+import se.janderssonse.sariftool.util.IssuesWriter;
 import se.janderssonse.sariftool.util.JsonWrapper;
+import se.janderssonse.sariftool.util.OutputFormat;
+import se.janderssonse.sariftool.util.PathFilter;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.logging.Logger;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-public record SonarMapper(SarifParser parser) implements Mapper {
+/**
+ * Maps a parsed SARIF log to Sonar generic issues. When given a {@link FingerprintSet} shared
+ * between the mappers of several files, results already mapped from another file are dropped.
+ */
+public record SonarMapper(SarifParser parser, FingerprintSet convertedResults) implements Mapper {
 
-    private static final Logger LOG = Logger.getLogger(SonarMapper.class.getName());
+    private static final LazyLogger LOG = LazyLogger.getLogger(SonarMapper.class);
 
-    private Issue toIssue(final Result result) {
-        final Optional<Issue.Severity> severity = toIssueSeverity(result.ruleId().get());
-        String driverName = parser.getDriver().isPresent() ? parser.getDriver().get().asShortString() : "";
+    private static final String MISSING_MESSAGE = "REALLY?";
+
+    public SonarMapper(final SarifParser parser) {
+        this(parser, null);
+    }
+
+    private Issue toIssue(final ResultView result, final RuleIndex ruleIndex, final String driverName) {
+        final Optional<Issue.Severity> severity = ruleIndex.severity(result);
         return new Issue(Optional.of(driverName),
-                Optional.of(result.ruleId().get()),
+                ruleIndex.ruleId(result),
                 severity,
                 Issue.severityToType(severity),
                 toPrimaryLocation(result),
@@ -41,83 +58,150 @@ public record SonarMapper(SarifParser parser) implements Mapper {
                 Optional.of(0));
     }
 
-    private Optional<Issue.Severity> toIssueSeverity(final String ruleId) {
-
-        final Optional<Rule> matchingRule = parser.getRules().stream()
-                .filter(rule -> rule.id().get().equals(ruleId))
-                .findFirst();
-
-        if (matchingRule.isPresent() && matchingRule.get().properties().isPresent()
-                && matchingRule.get().properties().get().severity().isPresent()) {
-            return Issue.toSeverityBasedOnRulePropSeverity(matchingRule.get().level(), matchingRule.get().properties().get());
-        }
-        return Optional.of(Issue.Severity.INFO);
-    }
-
-    private Optional<Set<SonarLocation>> toSecondaryLocations(final Result result) {
-        final Optional<List<Location>> locations = result.locations();
-        if (locations.isEmpty() || locations.get().size() < 2) {
+    private Optional<Set<SonarLocation>> toSecondaryLocations(final ResultView result) {
+        if (result.locationCount() < 2) {
             return Optional.empty();
         }
-        return Optional
-                .of(locations.get().stream().skip(1).map(location -> toLocation(location, result.message().get()))
-                        .collect(Collectors.toSet()));
+        final Set<SonarLocation> locations = new HashSet<>();
+        for (int i = 1; i < result.locationCount(); i++) {
+            locations.add(toLocation(result, i));
+        }
+        return Optional.of(locations);
     }
 
-    private Optional<SonarLocation> toPrimaryLocation(final Result result) {
-        final Optional<List<Location>> locations = result.locations();
-        if (locations.isEmpty() || locations.get().isEmpty()) {
+    private Optional<SonarLocation> toPrimaryLocation(final ResultView result) {
+        if (result.locationCount() == 0) {
             return Optional.empty();
         }
-        Location l = locations.get().get(0);
-        return Optional.of(toLocation(l, result.message().orElse("REALLY?")));
+        return Optional.of(toLocation(result, 0));
     }
 
-    private SonarLocation toLocation(final Location location, final String message) {
-        return new SonarLocation(message, location.uri(), toTextRange(location.region().get()));
+    private SonarLocation toLocation(final ResultView result, final int location) {
+        return new SonarLocation(result.message() != null ? result.message() : MISSING_MESSAGE,
+                result.uri(location), toTextRange(result, location));
     }
 
-    private TextRange toTextRange(final Region region) {
-        if (region == null) {
+    private TextRange toTextRange(final ResultView result, final int location) {
+        if (result.startLine(location) == CompactResult.NONE) {
             return null;
         }
         return new TextRange(
-                region.startLine(),
-                region.endLine(),
-                region.startColumn(),
-                region.endColumn());
+                result.startLine(location),
+                CompactResult.optional(result.endLine(location)),
+                CompactResult.optional(result.startColumn(location)),
+                CompactResult.optional(result.endColumn(location)));
     }
 
-    private Issues filterIssues(final String[] patternsToExclude, final Issues issues) {
-        return patternsToExclude != null && patternsToExclude.length > 0
-                ? issues.applyFilter(issue -> !isMatchingExlusionPattern(issue, patternsToExclude))
-                : issues;
+    private boolean isExcluded(final ResultView result, final PathFilter pathFilter) {
+        if (pathFilter.isEmpty() || result.locationCount() == 0) {
+            return false;
+        }
+        if (pathFilter.excludes(result.uri(0))) {
+            parser.metrics().addExcluded();
+            return true;
+        }
+        return false;
     }
 
-    private boolean isMatchingExlusionPattern(final Issue issue, final String[] patternsToExclude) {
-        final Optional<SonarLocation> primaryLocation = issue.primaryLocation();
-        if (primaryLocation.isEmpty()) {
-            return false;
+    private boolean isFirstSeen(final ResultView result, final RuleIndex ruleIndex, final String driverName,
+            final ResultDeduplicator deduplicator) {
+        final String ruleId = ruleIndex.ruleId(result).orElse(null);
+        if (deduplicator.firstSeen(driverName, ruleId, result)
+                && (convertedResults == null || convertedResults.add(ResultFingerprint.of(ruleId, result)))) {
+            return true;
         }
-        final String filePath = primaryLocation.get().filePath();
-        return Arrays.stream(patternsToExclude)
-                .anyMatch(
-                        pattern -> Pattern.compile(".*" + pattern + ".*", Pattern.CASE_INSENSITIVE).matcher(filePath)
-                                .matches());
+        parser.metrics().addDuplicate();
+        return false;
     }
 
-    public void map(final Path targetPath, final List<String> excludePaths) {
+    public Stream<Issue> toIssues(final List<String> excludePaths) {
 
-        Issues issues = new Issues(parser.getResults().stream()
-                .map(result -> toIssue(result))
-                .toList());
+        final PathFilter pathFilter = PathFilter.of(excludePaths);
+        final ResultDeduplicator deduplicator = new ResultDeduplicator();
 
-        Issues filteredIssues = filterIssues(excludePaths.toArray(new String[0]), issues);
+        return parser.getRuns().stream().flatMap(run -> toIssues(run, pathFilter, deduplicator));
+    }
+
+    private Stream<Issue> toIssues(final Run run, final PathFilter pathFilter, final ResultDeduplicator deduplicator) {
 
-        JsonWrapper.toFile(targetPath, filteredIssues);
+        final RuleIndex ruleIndex = new RuleIndex(run);
+        final String driverName = driverName(run);
+
+        return run.results().stream()
+                .filter(result -> !isExcluded(result, pathFilter))
+                .filter(result -> isFirstSeen(result, ruleIndex, driverName, deduplicator))
+                .map(result -> toIssue(result, ruleIndex, driverName))
+                // flatMap closes the stream of a run once its results are consumed
+                .onClose(deduplicator::endRun);
+    }
 
-        LOG.info(String.format("Wrote file: target '%s', issues '%s', excluded paths: '%s'", targetPath,
-                filteredIssues.result().size(),
-                excludePaths.stream().collect(Collectors.joining(","))));
+    @Override
+    public void map(final Path targetPath, final List<String> excludePaths, final OutputFormat format) {
+
+        final long start = System.nanoTime();
+        long issueCount;
+        try (IssuesWriter writer = JsonWrapper.toIssuesWriter(targetPath, format)) {
+            writeIssues(writer, excludePaths);
+            issueCount = writer.count();
+        } catch (IOException e) {
+            LOG.severe("Could not write file %s %s", targetPath, e);
+            deletePartialOutput(targetPath);
+            return;
+        } finally {
+            parser.metrics().time(Stage.MAP, start);
+        }
+        parser.metrics().addBytesWritten(outputSize(targetPath));
+
+        LOG.info(() -> String.format("Wrote file: target '%s', issues '%s', excluded paths: '%s'", targetPath,
+                issueCount, String.join(",", excludePaths)));
+    }
+
+    @Override
+    public void map(final IssueSink sink, final List<String> excludePaths) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            writeIssues(sink, excludePaths);
+        } finally {
+            parser.metrics().time(Stage.MAP, start);
+        }
+    }
+
+    // Run by run through a cursor, so only the issues written are objects
+    private void writeIssues(final IssueSink sink, final List<String> excludePaths) throws IOException {
+        final FileMetrics metrics = parser.metrics();
+        final PathFilter pathFilter = PathFilter.of(excludePaths);
+        final ResultDeduplicator deduplicator = new ResultDeduplicator();
+        for (Run run : parser.getRuns()) {
+            final RuleIndex ruleIndex = new RuleIndex(run);
+            final String driverName = driverName(run);
+            final ResultCursor results = ResultStore.cursor(run.results());
+            while (results.next()) {
+                if (!isExcluded(results, pathFilter) && isFirstSeen(results, ruleIndex, driverName, deduplicator)) {
+                    sink.write(toIssue(results, ruleIndex, driverName));
+                    metrics.addIssue();
+                }
+            }
+            deduplicator.endRun();
+        }
+    }
+
+    private static String driverName(final Run run) {
+        return run.driver().isPresent() ? run.driver().get().asShortString() : "";
+    }
+
+    private static long outputSize(final Path targetPath) {
+        try {
+            return Files.size(targetPath);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void deletePartialOutput(final Path targetPath) {
+        try {
+            Files.deleteIfExists(targetPath);
+        } catch (IOException e) {
+            LOG.warning("Could not remove partial file %s", targetPath);
+        }
     }
 }
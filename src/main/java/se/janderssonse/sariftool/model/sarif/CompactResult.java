@@ -0,0 +1,236 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package se.janderssonse.sariftool.model.sarif;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * Allocation lean form of a {@link Result}, used on the conversion hot path.
+ * Locations are kept in two flat arrays and every missing number is {@link #NONE}, so a result
+ * is four objects regardless of its number of locations. {@link #toResult()} gives the record view.
+ */
+public final class CompactResult implements ResultView {
+
+    public static final int NONE = Integer.MIN_VALUE;
+    public static final long NO_FINGERPRINT = 0L;
+
+    // Per location: index, startLine, endLine, startColumn, endColumn
+    private static final int INTS_PER_LOCATION = 5;
+    // Per location: uri, uriBaseId
+    private static final int STRINGS_PER_LOCATION = 2;
+
+    // Line and column numbers are mostly small, share their boxed optionals
+    private static final int CACHED_OPTIONALS = 4096;
+    private static final List<Optional<Integer>> OPTIONALS = IntStream.range(0, CACHED_OPTIONALS)
+            .mapToObj(Optional::of).toList();
+
+    private final String ruleId;
+    private final int ruleIndex;
+    private final int toolComponent;
+    private final String message;
+    private final long fingerprint;
+    private final String[] strings;
+    private final int[] ints;
+
+    private CompactResult(final String ruleId, final int ruleIndex, final int toolComponent, final String message,
+            final long fingerprint, final String[] strings, final int[] ints) {
+        this.ruleId = ruleId;
+        this.ruleIndex = ruleIndex;
+        this.toolComponent = toolComponent;
+        this.message = message;
+        this.fingerprint = fingerprint;
+        this.strings = strings;
+        this.ints = ints;
+    }
+
+    public String ruleId() {
+        return ruleId;
+    }
+
+    public int ruleIndex() {
+        return ruleIndex;
+    }
+
+    /**
+     * Index of the extension holding the rule, {@link #NONE} when the rule is in the driver.
+     */
+    public int toolComponent() {
+        return toolComponent;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    /**
+     * Hash of the result's SARIF fingerprints, or partialFingerprints, {@link #NO_FINGERPRINT} when it has none.
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    public int locationCount() {
+        return ints.length / INTS_PER_LOCATION;
+    }
+
+    public String uri(final int location) {
+        return strings[location * STRINGS_PER_LOCATION];
+    }
+
+    public String uriBaseId(final int location) {
+        return strings[location * STRINGS_PER_LOCATION + 1];
+    }
+
+    public int index(final int location) {
+        return ints[location * INTS_PER_LOCATION];
+    }
+
+    public int startLine(final int location) {
+        return ints[location * INTS_PER_LOCATION + 1];
+    }
+
+    public int endLine(final int location) {
+        return ints[location * INTS_PER_LOCATION + 2];
+    }
+
+    public int startColumn(final int location) {
+        return ints[location * INTS_PER_LOCATION + 3];
+    }
+
+    public int endColumn(final int location) {
+        return ints[location * INTS_PER_LOCATION + 4];
+    }
+
+    public Result toResult() {
+        final List<Location> locations = new ArrayList<>(locationCount());
+        for (int i = 0; i < locationCount(); i++) {
+            locations.add(new Location(uri(i), Optional.ofNullable(uriBaseId(i)), optional(index(i)),
+                    startLine(i) == NONE ? Optional.empty()
+                            : Optional.of(new Region(startLine(i), optional(endLine(i)), optional(startColumn(i)),
+                                    optional(endColumn(i))))));
+        }
+        return new Result(Optional.ofNullable(ruleId), optional(ruleIndex), Optional.ofNullable(message),
+                Optional.of(locations));
+    }
+
+    public static List<Result> asResults(final List<CompactResult> results) {
+        return new AbstractList<>() {
+            @Override
+            public Result get(final int index) {
+                return results.get(index).toResult();
+            }
+
+            @Override
+            public int size() {
+                return results.size();
+            }
+
+            // The results may only be cheap to iterate, e.g. when spilled to disk
+            @Override
+            public Iterator<Result> iterator() {
+                final Iterator<CompactResult> compact = results.iterator();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return compact.hasNext();
+                    }
+
+                    @Override
+                    public Result next() {
+                        return compact.next().toResult();
+                    }
+                };
+            }
+        };
+    }
+
+    public static Optional<Integer> optional(final int value) {
+        if (value == NONE) {
+            return Optional.empty();
+        }
+        return value >= 0 && value < CACHED_OPTIONALS ? OPTIONALS.get(value) : Optional.of(value);
+    }
+
+    public static Builder builder(final int locations) {
+        return new Builder(locations);
+    }
+
+    public static final class Builder {
+        private String ruleId;
+        private int ruleIndex = NONE;
+        private int toolComponent = NONE;
+        private String message;
+        private long fingerprint = NO_FINGERPRINT;
+        private final String[] strings;
+        private final int[] ints;
+        private int location;
+
+        private Builder(final int locations) {
+            strings = new String[locations * STRINGS_PER_LOCATION];
+            ints = new int[locations * INTS_PER_LOCATION];
+        }
+
+        public Builder ruleId(final String id) {
+            this.ruleId = id;
+            return this;
+        }
+
+        public Builder ruleIndex(final int index) {
+            this.ruleIndex = index;
+            return this;
+        }
+
+        public Builder toolComponent(final int index) {
+            this.toolComponent = index;
+            return this;
+        }
+
+        public Builder message(final String text) {
+            this.message = text;
+            return this;
+        }
+
+        public Builder fingerprint(final long hash) {
+            this.fingerprint = hash;
+            return this;
+        }
+
+        public Builder location(final String uri, final String uriBaseId, final int index, final int startLine,
+                final int endLine, final int startColumn, final int endColumn) {
+            strings[location * STRINGS_PER_LOCATION] = uri;
+            strings[location * STRINGS_PER_LOCATION + 1] = uriBaseId;
+            final int offset = location * INTS_PER_LOCATION;
+            ints[offset] = index;
+            ints[offset + 1] = startLine;
+            ints[offset + 2] = endLine;
+            ints[offset + 3] = startColumn;
+            ints[offset + 4] = endColumn;
+            location++;
+            return this;
+        }
+
+        public CompactResult build() {
+            if (location != locationCount()) {
+                throw new IllegalStateException(
+                        String.format("Expected %d locations, got %d", locationCount(), location));
+            }
+            return new CompactResult(ruleId, ruleIndex, toolComponent, message, fingerprint, strings, ints);
+        }
+
+        private int locationCount() {
+            return ints.length / INTS_PER_LOCATION;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toResult().toString();
+    }
+}
@@ -0,0 +1,17 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package se.janderssonse.sariftool.model.sarif;
+
+/**
+ * Moves over results one at a time, viewing the current one. The view changes on each
+ * {@link #next()}, so it must not be kept.
+ */
+public interface ResultCursor extends ResultView {
+
+    /**
+     * Moves to the next result, false when there is none.
+     */
+    boolean next();
+}
@@ -0,0 +1,340 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package se.janderssonse.sariftool.model.sarif;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The results of a run as parallel primitive columns, one array per field, instead of objects.
+ * Rule ids, messages and uris are ids into a dictionary of the run, so a string repeated by many
+ * results is held once. A result is about 56 bytes plus 28 per extra location, and no objects.
+ *
+ * Results are added while parsing, then the store is {@link #seal() sealed}. A {@link #cursor()}
+ * reads them without creating objects, {@link #get(int)} builds a {@link CompactResult}.
+ */
+public final class ResultStore extends AbstractList<CompactResult> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MISSING = -1;
+    // Per location: index, startLine, endLine, startColumn, endColumn
+    private static final int INTS_PER_LOCATION = 5;
+
+    private String[] dictionary = new String[INITIAL_CAPACITY];
+    private int dictionarySize;
+    // Only while adding, dropped when sealed
+    private Map<String, Integer> ids = new HashMap<>();
+
+    private int size;
+    private int[] ruleIds = new int[INITIAL_CAPACITY];
+    private int[] ruleIndexes = new int[INITIAL_CAPACITY];
+    private int[] toolComponents = new int[INITIAL_CAPACITY];
+    private int[] messages = new int[INITIAL_CAPACITY];
+    private long[] fingerprints = new long[INITIAL_CAPACITY];
+    // Index of each result's first location, and the end of the last
+    private int[] firstLocations = new int[INITIAL_CAPACITY + 1];
+
+    private int locations;
+    private int[] uris = new int[INITIAL_CAPACITY];
+    private int[] uriBaseIds = new int[INITIAL_CAPACITY];
+    private int[] locationInts = new int[INITIAL_CAPACITY * INTS_PER_LOCATION];
+
+    @Override
+    public boolean add(final CompactResult result) {
+        if (ids == null) {
+            throw new IllegalStateException("Results can not be added to a sealed store");
+        }
+        if (size == ruleIds.length) {
+            final int capacity = size * 2;
+            ruleIds = Arrays.copyOf(ruleIds, capacity);
+            ruleIndexes = Arrays.copyOf(ruleIndexes, capacity);
+            toolComponents = Arrays.copyOf(toolComponents, capacity);
+            messages = Arrays.copyOf(messages, capacity);
+            fingerprints = Arrays.copyOf(fingerprints, capacity);
+            firstLocations = Arrays.copyOf(firstLocations, capacity + 1);
+        }
+        ruleIds[size] = id(result.ruleId());
+        ruleIndexes[size] = result.ruleIndex();
+        toolComponents[size] = result.toolComponent();
+        messages[size] = id(result.message());
+        fingerprints[size] = result.fingerprint();
+
+        final int count = result.locationCount();
+        if (locations + count > uris.length) {
+            final int capacity = Math.max(uris.length * 2, locations + count);
+            uris = Arrays.copyOf(uris, capacity);
+            uriBaseIds = Arrays.copyOf(uriBaseIds, capacity);
+            locationInts = Arrays.copyOf(locationInts, capacity * INTS_PER_LOCATION);
+        }
+        for (int i = 0; i < count; i++) {
+            final int location = locations + i;
+            uris[location] = id(result.uri(i));
+            uriBaseIds[location] = id(result.uriBaseId(i));
+            final int offset = location * INTS_PER_LOCATION;
+            locationInts[offset] = result.index(i);
+            locationInts[offset + 1] = result.startLine(i);
+            locationInts[offset + 2] = result.endLine(i);
+            locationInts[offset + 3] = result.startColumn(i);
+            locationInts[offset + 4] = result.endColumn(i);
+        }
+        locations += count;
+        size++;
+        firstLocations[size] = locations;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Trims the columns to their size and drops the lookup used while adding.
+     */
+    public ResultStore seal() {
+        if (ids == null) {
+            return this;
+        }
+        dictionary = Arrays.copyOf(dictionary, dictionarySize);
+        ids = null;
+        ruleIds = Arrays.copyOf(ruleIds, size);
+        ruleIndexes = Arrays.copyOf(ruleIndexes, size);
+        toolComponents = Arrays.copyOf(toolComponents, size);
+        messages = Arrays.copyOf(messages, size);
+        fingerprints = Arrays.copyOf(fingerprints, size);
+        firstLocations = Arrays.copyOf(firstLocations, size + 1);
+        uris = Arrays.copyOf(uris, locations);
+        uriBaseIds = Arrays.copyOf(uriBaseIds, locations);
+        locationInts = Arrays.copyOf(locationInts, locations * INTS_PER_LOCATION);
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Distinct strings of the run's results.
+     */
+    public int dictionarySize() {
+        return dictionarySize;
+    }
+
+    @Override
+    public CompactResult get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        final int first = firstLocations[index];
+        final int count = firstLocations[index + 1] - first;
+        final CompactResult.Builder builder = CompactResult.builder(count)
+                .ruleId(string(ruleIds[index]))
+                .ruleIndex(ruleIndexes[index])
+                .toolComponent(toolComponents[index])
+                .message(string(messages[index]))
+                .fingerprint(fingerprints[index]);
+        for (int location = first; location < first + count; location++) {
+            final int offset = location * INTS_PER_LOCATION;
+            builder.location(string(uris[location]), string(uriBaseIds[location]), locationInts[offset],
+                    locationInts[offset + 1], locationInts[offset + 2], locationInts[offset + 3],
+                    locationInts[offset + 4]);
+        }
+        return builder.build();
+    }
+
+    public ResultCursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * A cursor over any results, without objects when they are in a store.
+     */
+    public static ResultCursor cursor(final List<CompactResult> results) {
+        return results instanceof ResultStore store ? store.cursor() : new IteratorCursor(results.iterator());
+    }
+
+    private int id(final String value) {
+        if (value == null) {
+            return MISSING;
+        }
+        final Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (dictionarySize == dictionary.length) {
+            dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+        }
+        dictionary[dictionarySize] = value;
+        ids.put(value, dictionarySize);
+        return dictionarySize++;
+    }
+
+    private String string(final int id) {
+        return id == MISSING ? null : dictionary[id];
+    }
+
+    private final class Cursor implements ResultCursor {
+        private int position = -1;
+        private int first;
+
+        @Override
+        public boolean next() {
+            if (position + 1 >= size) {
+                position = size;
+                return false;
+            }
+            position++;
+            first = firstLocations[position];
+            return true;
+        }
+
+        @Override
+        public String ruleId() {
+            return string(ruleIds[position]);
+        }
+
+        @Override
+        public int ruleIndex() {
+            return ruleIndexes[position];
+        }
+
+        @Override
+        public int toolComponent() {
+            return toolComponents[position];
+        }
+
+        @Override
+        public String message() {
+            return string(messages[position]);
+        }
+
+        @Override
+        public long fingerprint() {
+            return fingerprints[position];
+        }
+
+        @Override
+        public int locationCount() {
+            return firstLocations[position + 1] - first;
+        }
+
+        @Override
+        public String uri(final int location) {
+            return string(uris[first + location]);
+        }
+
+        @Override
+        public String uriBaseId(final int location) {
+            return string(uriBaseIds[first + location]);
+        }
+
+        @Override
+        public int index(final int location) {
+            return locationInts[(first + location) * INTS_PER_LOCATION];
+        }
+
+        @Override
+        public int startLine(final int location) {
+            return locationInts[(first + location) * INTS_PER_LOCATION + 1];
+        }
+
+        @Override
+        public int endLine(final int location) {
+            return locationInts[(first + location) * INTS_PER_LOCATION + 2];
+        }
+
+        @Override
+        public int startColumn(final int location) {
+            return locationInts[(first + location) * INTS_PER_LOCATION + 3];
+        }
+
+        @Override
+        public int endColumn(final int location) {
+            return locationInts[(first + location) * INTS_PER_LOCATION + 4];
+        }
+    }
+
+    private static final class IteratorCursor implements ResultCursor {
+        private final Iterator<CompactResult> results;
+        private CompactResult current;
+
+        IteratorCursor(final Iterator<CompactResult> results) {
+            this.results = results;
+        }
+
+        @Override
+        public boolean next() {
+            current = results.hasNext() ? results.next() : null;
+            return current != null;
+        }
+
+        @Override
+        public String ruleId() {
+            return current.ruleId();
+        }
+
+        @Override
+        public int ruleIndex() {
+            return current.ruleIndex();
+        }
+
+        @Override
+        public int toolComponent() {
+            return current.toolComponent();
+        }
+
+        @Override
+        public String message() {
+            return current.message();
+        }
+
+        @Override
+        public long fingerprint() {
+            return current.fingerprint();
+        }
+
+        @Override
+        public int locationCount() {
+            return current.locationCount();
+        }
+
+        @Override
+        public String uri(final int location) {
+            return current.uri(location);
+        }
+
+        @Override
+        public String uriBaseId(final int location) {
+            return current.uriBaseId(location);
+        }
+
+        @Override
+        public int index(final int location) {
+            return current.index(location);
+        }
+
+        @Override
+        public int startLine(final int location) {
+            return current.startLine(location);
+        }
+
+        @Override
+        public int endLine(final int location) {
+            return current.endLine(location);
+        }
+
+        @Override
+        public int startColumn(final int location) {
+            return current.startColumn(location);
+        }
+
+        @Override
+        public int endColumn(final int location) {
+            return current.endColumn(location);
+        }
+    }
+}
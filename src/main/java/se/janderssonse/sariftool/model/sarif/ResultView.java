@@ -0,0 +1,41 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package se.janderssonse.sariftool.model.sarif;
+
+/**
+ * The fields of a result the conversion reads, as given by a {@link CompactResult} or by a
+ * {@link ResultCursor} over a {@link ResultStore}. A missing number is {@link CompactResult#NONE}.
+ */
+public interface ResultView {
+
+    String ruleId();
+
+    int ruleIndex();
+
+    /**
+     * Index of the extension holding the rule, {@link CompactResult#NONE} when the rule is in the driver.
+     */
+    int toolComponent();
+
+    String message();
+
+    long fingerprint();
+
+    int locationCount();
+
+    String uri(int location);
+
+    String uriBaseId(int location);
+
+    int index(int location);
+
+    int startLine(int location);
+
+    int endLine(int location);
+
+    int startColumn(int location);
+
+    int endColumn(int location);
+}
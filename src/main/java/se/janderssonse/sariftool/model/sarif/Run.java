@@ -0,0 +1,48 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package se.janderssonse.sariftool.model.sarif;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * One element of a SARIF log's runs. Rules are kept per tool component, as a result's
+ * ruleIndex refers to the driver rules, or to the extension given by its toolComponent.
+ */
+public record Run(Optional<Driver> driver,
+        List<Rule> rules,
+        List<List<Rule>> extensionRules,
+        List<CompactResult> results) {
+
+    /**
+     * The rule tables of the run, the driver's first, then one per extension.
+     */
+    public List<List<Rule>> ruleTables() {
+        final List<List<Rule>> tables = new ArrayList<>(extensionRules.size() + 1);
+        tables.add(rules);
+        tables.addAll(extensionRules);
+        return tables;
+    }
+
+    public List<Rule> allRules() {
+        if (extensionRules.isEmpty()) {
+            return rules;
+        }
+        final List<Rule> all = new ArrayList<>(rules);
+        extensionRules.forEach(all::addAll);
+        return all;
+    }
+
+    @Override
+    public final String toString() {
+        return String.format("%s[%ndriver=%s%nrules=%s%nextensions=%s%nresults=%s%n]",
+                this.getClass().getName(),
+                driver.isPresent() ? driver.get() : "",
+                rules.size(),
+                extensionRules.size(),
+                results.size());
+    }
+}
@@ -0,0 +1,105 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import se.janderssonse.sariftool.model.sarif.CompactResult;
+
+/**
+ * Binary form of a {@link CompactResult} for a {@link SpillBuffer}. Strings are written as a length
+ * and UTF-8 bytes, -1 for null, numbers as plain ints, {@link CompactResult#NONE} included.
+ */
+public final class CompactResultCodec implements SpillBuffer.Codec<CompactResult> {
+
+    public static final CompactResultCodec INSTANCE = new CompactResultCodec();
+
+    // Object headers, the arrays and the fields of a result, roughly
+    private static final long RESULT_BYTES = 96;
+    private static final long LOCATION_BYTES = 5 * Integer.BYTES + 2 * Long.BYTES;
+    private static final long STRING_BYTES = 40;
+
+    private static final int NULL = -1;
+
+    private CompactResultCodec() {
+    }
+
+    @Override
+    public long weigh(final CompactResult result) {
+        long bytes = RESULT_BYTES + stringBytes(result.ruleId()) + stringBytes(result.message());
+        for (int i = 0; i < result.locationCount(); i++) {
+            // uri and uriBaseId are interned, their text is shared with other results
+            bytes += LOCATION_BYTES;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void write(final DataOutputStream out, final CompactResult result) throws IOException {
+        writeString(out, result.ruleId());
+        out.writeInt(result.ruleIndex());
+        out.writeInt(result.toolComponent());
+        writeString(out, result.message());
+        out.writeLong(result.fingerprint());
+        out.writeInt(result.locationCount());
+        for (int i = 0; i < result.locationCount(); i++) {
+            writeString(out, result.uri(i));
+            writeString(out, result.uriBaseId(i));
+            out.writeInt(result.index(i));
+            out.writeInt(result.startLine(i));
+            out.writeInt(result.endLine(i));
+            out.writeInt(result.startColumn(i));
+            out.writeInt(result.endColumn(i));
+        }
+    }
+
+    @Override
+    public CompactResult read(final DataInputStream in) throws IOException {
+        final String ruleId = readString(in);
+        final int ruleIndex = in.readInt();
+        final int toolComponent = in.readInt();
+        final String message = readString(in);
+        final long fingerprint = in.readLong();
+        final int locations = in.readInt();
+
+        final CompactResult.Builder builder = CompactResult.builder(locations)
+                .ruleId(ruleId)
+                .ruleIndex(ruleIndex)
+                .toolComponent(toolComponent)
+                .message(message)
+                .fingerprint(fingerprint);
+        for (int i = 0; i < locations; i++) {
+            builder.location(readString(in), readString(in), in.readInt(), in.readInt(), in.readInt(), in.readInt(),
+                    in.readInt());
+        }
+        return builder.build();
+    }
+
+    private static long stringBytes(final String value) {
+        return value == null ? 0 : STRING_BYTES + value.length();
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length == NULL) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,173 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import se.janderssonse.sariftool.conf.LazyLogger;
+
+/**
+ * On disk cache of converted reports. An entry is keyed by the SHA-256 of the SARIF file content
+ * together with everything else that affects the output, so an unchanged input is never parsed again.
+ * The cache is kept below a size limit by evicting the least recently used entries.
+ * Besides reports, an entry can be any file, e.g. the parsed model of a SARIF file.
+ */
+public final class ConversionCache {
+
+    /**
+     * Part of every key. Bump it with any change to what a cached entry holds, e.g. the issues a mapper
+     * writes or the layout of a cached model, so entries written before the change are never reused.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final LazyLogger LOG = LazyLogger.getLogger(ConversionCache.class);
+    private static final String ENTRY_SUFFIX = ".cached";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path cacheDir;
+    private final long maxBytes;
+
+    public interface EntryWriter {
+        void write(Path entry) throws IOException;
+    }
+
+    public ConversionCache(final Path cacheDir, final long maxBytes) throws IOException {
+        this.cacheDir = Files.createDirectories(cacheDir);
+        this.maxBytes = maxBytes;
+    }
+
+    public String key(final Path sarifFile, final String... settings) throws IOException {
+        final MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(sarifFile), digest)) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (in.read(buffer) != -1) {
+                // digest is updated while reading
+            }
+        }
+        digest.update((byte) 0);
+        digest.update(Integer.toString(FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+        for (String setting : settings) {
+            digest.update((byte) 0);
+            digest.update(setting.getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public boolean restore(final String key, final Path target) {
+        final Path entry = entry(key);
+        try {
+            Files.copy(entry, target, StandardCopyOption.REPLACE_EXISTING);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The entry file itself, to be read in place, empty when there is none.
+     */
+    public Optional<Path> lookup(final String key) {
+        final Path entry = entry(key);
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(entry);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    public void store(final String key, final Path output) {
+        store(key, output.toString(), tmp -> Files.copy(output, tmp, StandardCopyOption.REPLACE_EXISTING));
+    }
+
+    /**
+     * Stores what the writer writes to a file, the entry only appears once it is complete.
+     */
+    public void store(final String key, final String name, final EntryWriter writer) {
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(cacheDir, key, ".tmp");
+            writer.write(tmp);
+            Files.move(tmp, entry(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evict();
+        } catch (IOException e) {
+            LOG.warning("Could not cache %s: %s", name, e.getMessage());
+            deleteQuietly(tmp);
+        }
+    }
+
+    private static void deleteQuietly(final Path tmp) {
+        if (tmp == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            LOG.fine("Could not remove %s: %s", tmp, e.getMessage());
+        }
+    }
+
+    private synchronized void evict() throws IOException {
+        final List<Path> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            files.filter(file -> file.getFileName().toString().endsWith(ENTRY_SUFFIX)).forEach(entries::add);
+        }
+
+        long total = 0;
+        for (Path entry : entries) {
+            total += Files.size(entry);
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+
+        entries.sort(Comparator.comparing(ConversionCache::lastModified));
+        for (Path entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            final long size = Files.size(entry);
+            if (Files.deleteIfExists(entry)) {
+                total -= size;
+                LOG.fine("Evicted cache entry %s", entry.getFileName());
+            }
+        }
+    }
+
+    private Path entry(final String key) {
+        return cacheDir.resolve(key + ENTRY_SUFFIX);
+    }
+
+    private static FileTime lastModified(final Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
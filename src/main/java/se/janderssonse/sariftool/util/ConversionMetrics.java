@@ -0,0 +1,167 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+import se.janderssonse.sariftool.util.FileMetrics.Stage;
+
+/**
+ * Collects the {@link FileMetrics} of a conversion job and summarizes them as JSON, or as
+ * Prometheus text format. Allocation is the bytes allocated by the thread converting a file,
+ * {@link FileMetrics#UNKNOWN} when the JVM can not measure it. A file converted again, as when
+ * watching, replaces its earlier metrics.
+ */
+public final class ConversionMetrics {
+
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    private static final String PROMETHEUS_PREFIX = "sariftool_";
+
+    private final long startNanos = System.nanoTime();
+    private final Map<Path, FileMetrics> files = new LinkedHashMap<>();
+    private final com.sun.management.ThreadMXBean threads = threadMXBean();
+    private long reportBytes;
+
+    public FileMetrics start(final Path file) {
+        final FileMetrics metrics = new FileMetrics(file);
+        metrics.started(System.nanoTime(), allocatedBytes());
+        return metrics;
+    }
+
+    public synchronized void finish(final FileMetrics metrics) {
+        metrics.finished(System.nanoTime(), allocatedBytes());
+        files.put(metrics.file(), metrics);
+    }
+
+    /**
+     * Bytes written to reports shared by all files, as with --merge, replacing those of an earlier merge.
+     */
+    public synchronized void setReportBytes(final long bytes) {
+        reportBytes = bytes;
+    }
+
+    public record Summary(int files, int cachedFiles, double wallMs, Map<String, Double> stageMs, long bytesRead,
+            long bytesWritten, long results, long issues, long excluded, long duplicates, long allocatedBytes,
+            List<FileSummary> perFile) {
+    }
+
+    public record FileSummary(String file, boolean cached, double wallMs, Map<String, Double> stageMs,
+            long bytesRead, long bytesWritten, long results, long issues, long excluded, long duplicates,
+            long allocatedBytes) {
+    }
+
+    public synchronized Summary summary() {
+        final List<FileSummary> perFile = files.values().stream().map(ConversionMetrics::toFileSummary).toList();
+        final Map<String, Double> stageMs = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            stageMs.put(stage.label(), millis(sum(metrics -> metrics.stageNanos(stage))));
+        }
+        final boolean allocationKnown = files.values().stream()
+                .allMatch(m -> m.allocatedBytes() != FileMetrics.UNKNOWN);
+        return new Summary(files.size(), (int) files.values().stream().filter(FileMetrics::cached).count(),
+                millis(System.nanoTime() - startNanos), stageMs, sum(FileMetrics::bytesRead),
+                sum(FileMetrics::bytesWritten) + reportBytes, sum(FileMetrics::results), sum(FileMetrics::issues),
+                sum(FileMetrics::excluded), sum(FileMetrics::duplicates),
+                allocationKnown ? sum(FileMetrics::allocatedBytes) : FileMetrics.UNKNOWN, perFile);
+    }
+
+    public String toJson() throws IOException {
+        return JsonWrapper.toJson(summary());
+    }
+
+    /**
+     * The summary in Prometheus text exposition format, e.g. for the node exporter textfile collector.
+     */
+    public synchronized String toPrometheus() {
+        final Summary summary = summary();
+        final StringBuilder text = new StringBuilder(1024 + files.size() * 1024);
+        gauge(text, "files", "SARIF files converted.");
+        sample(text, "files", "", summary.files());
+        gauge(text, "wall_seconds", "Wall time of the conversion job.");
+        sample(text, "wall_seconds", "", summary.wallMs() / 1000);
+
+        gauge(text, "stage_seconds", "Wall time per file and conversion stage.");
+        for (FileMetrics file : files.values()) {
+            for (Stage stage : Stage.values()) {
+                sample(text, "stage_seconds", labels(file) + ",stage=\"" + stage.label() + "\"",
+                        file.stageNanos(stage) / NANOS_PER_SECOND);
+            }
+        }
+        gauge(text, "file_seconds", "Wall time per file.");
+        files.values().forEach(file -> sample(text, "file_seconds", labels(file),
+                file.wallNanos() / NANOS_PER_SECOND));
+        fileGauge(text, "read_bytes", "Bytes of SARIF read per file.", FileMetrics::bytesRead);
+        fileGauge(text, "written_bytes", "Bytes of report written per file.", FileMetrics::bytesWritten);
+        fileGauge(text, "results", "SARIF results per file.", FileMetrics::results);
+        fileGauge(text, "issues", "Issues written per file.", FileMetrics::issues);
+        fileGauge(text, "excluded", "Results dropped by an exclude path per file.", FileMetrics::excluded);
+        fileGauge(text, "duplicates", "Results dropped as duplicates per file.", FileMetrics::duplicates);
+        fileGauge(text, "allocated_bytes", "Bytes allocated converting each file.", FileMetrics::allocatedBytes);
+        return text.toString();
+    }
+
+    private void fileGauge(final StringBuilder text, final String name, final String help,
+            final ToLongFunction<FileMetrics> value) {
+        gauge(text, name, help);
+        files.values().forEach(file -> sample(text, name, labels(file), value.applyAsLong(file)));
+    }
+
+    private static void gauge(final StringBuilder text, final String name, final String help) {
+        text.append("# HELP ").append(PROMETHEUS_PREFIX).append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(PROMETHEUS_PREFIX).append(name).append(" gauge\n");
+    }
+
+    private static void sample(final StringBuilder text, final String name, final String labels,
+            final Object value) {
+        text.append(PROMETHEUS_PREFIX).append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(value).append('\n');
+    }
+
+    private static String labels(final FileMetrics file) {
+        final String value = file.file().toString().replace("\\", "\\\\").replace("\"", "\\\"")
+                .replace("\n", "\\n");
+        return "file=\"" + value + "\"";
+    }
+
+    private static FileSummary toFileSummary(final FileMetrics metrics) {
+        final Map<String, Double> stageMs = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            stageMs.put(stage.label(), millis(metrics.stageNanos(stage)));
+        }
+        return new FileSummary(metrics.file().toString(), metrics.cached(), millis(metrics.wallNanos()), stageMs,
+                metrics.bytesRead(), metrics.bytesWritten(), metrics.results(), metrics.issues(), metrics.excluded(),
+                metrics.duplicates(), metrics.allocatedBytes());
+    }
+
+    private long sum(final ToLongFunction<FileMetrics> value) {
+        return files.values().stream().mapToLong(value).sum();
+    }
+
+    private static double millis(final long nanos) {
+        return Math.round(nanos / NANOS_PER_MILLI * 1000) / 1000d;
+    }
+
+    private long allocatedBytes() {
+        return threads != null ? threads.getCurrentThreadAllocatedBytes() : FileMetrics.UNKNOWN;
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
+        }
+        return null;
+    }
+}
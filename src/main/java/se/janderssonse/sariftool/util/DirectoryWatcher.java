@@ -0,0 +1,167 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import se.janderssonse.sariftool.conf.LazyLogger;
+
+/**
+ * Watches a directory tree for files, matched by a {@link FileDiscovery}, that are created or modified.
+ * A file is passed on once it has had no events and kept its size for the quiet period, so a file
+ * still being written is not read half way. Directories created later are watched too.
+ */
+public final class DirectoryWatcher implements Closeable {
+
+    private static final LazyLogger LOG = LazyLogger.getLogger(DirectoryWatcher.class);
+
+    private final Path dir;
+    private final FileDiscovery discovery;
+    private final long quietNanos;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+    // Files with events, in the order first seen
+    private final Map<Path, Pending> pending = new LinkedHashMap<>();
+
+    private static final class Pending {
+        private long lastChange;
+        private long size;
+
+        Pending(final long lastChange, final long size) {
+            this.lastChange = lastChange;
+            this.size = size;
+        }
+    }
+
+    public DirectoryWatcher(final Path dir, final FileDiscovery discovery, final long quietMillis)
+            throws IOException {
+        this.dir = dir;
+        this.discovery = discovery;
+        this.quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMillis);
+        this.watchService = dir.getFileSystem().newWatchService();
+        discovery.walk(dir, dir, file -> { }, this::register);
+    }
+
+    /**
+     * Passes on the files that are ready, a batch at a time, until the watcher is closed or the thread
+     * is interrupted.
+     */
+    public void watch(final Consumer<List<Path>> onReady) throws IOException {
+        final long pollMillis = Math.max(10, TimeUnit.NANOSECONDS.toMillis(quietNanos) / 4);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final WatchKey key = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    handle(key);
+                }
+                final List<Path> ready = ready(System.nanoTime());
+                if (!ready.isEmpty()) {
+                    onReady.accept(ready);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            LOG.fine("Stopped watching %s", dir);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void register(final Path watchedDir) {
+        try {
+            watchedDirs.put(watchedDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY), watchedDir);
+        } catch (IOException e) {
+            LOG.warning("Could not watch %s: %s", watchedDir, e.getMessage());
+        }
+    }
+
+    private void handle(final WatchKey key) throws IOException {
+        final Path watchedDir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // Events were lost, every file may have changed
+                LOG.warning("Too many changes in %s, checking all files", dir);
+                discovery.walk(dir, dir, this::changed, subDir -> { });
+                continue;
+            }
+            if (watchedDir == null) {
+                continue;
+            }
+            final Path path = watchedDir.resolve((Path) event.context());
+            if (Files.isDirectory(path)) {
+                // Files may have been added before the directory was registered
+                if (event.kind() == ENTRY_CREATE) {
+                    discovery.walk(dir, path, this::changed, this::register);
+                }
+            } else if (discovery.matchesFile(dir, path)) {
+                changed(path);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+    }
+
+    private void changed(final Path file) {
+        final Pending entry = pending.get(file);
+        final long size = size(file);
+        if (entry == null) {
+            pending.put(file, new Pending(System.nanoTime(), size));
+        } else {
+            entry.lastChange = System.nanoTime();
+            entry.size = size;
+        }
+    }
+
+    private List<Path> ready(final long now) {
+        final List<Path> ready = new ArrayList<>();
+        final Iterator<Map.Entry<Path, Pending>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            final Map.Entry<Path, Pending> entry = entries.next();
+            final Pending file = entry.getValue();
+            final long size = size(entry.getKey());
+            if (size < 0) {
+                entries.remove();
+            } else if (size != file.size) {
+                file.size = size;
+                file.lastChange = now;
+            } else if (now - file.lastChange >= quietNanos) {
+                ready.add(entry.getKey());
+                entries.remove();
+            }
+        }
+        return ready;
+    }
+
+    private static long size(final Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
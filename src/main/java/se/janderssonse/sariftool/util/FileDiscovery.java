@@ -0,0 +1,142 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+import se.janderssonse.sariftool.conf.LazyLogger;
+
+/**
+ * Finds the files below a directory that match an include glob and no exclude glob, and hands each
+ * one on as soon as it is found. Globs are matched against the path relative to the directory,
+ * e.g. {@code **.sarif} or {@code build/**}. An excluded directory is not descended into.
+ * The file attributes come with the walk, so no file is stat'ed twice.
+ */
+public final class FileDiscovery {
+
+    public static final String DEFAULT_INCLUDE = "**.sarif";
+    public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+    private static final LazyLogger LOG = LazyLogger.getLogger(FileDiscovery.class);
+
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final int maxDepth;
+
+    /**
+     * @param maxDepth directory levels to search, 1 for only the files directly in the directory
+     */
+    public FileDiscovery(final List<String> includes, final List<String> excludes, final int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Max depth must be at least 1, was " + maxDepth);
+        }
+        this.includes = matchers(includes == null || includes.isEmpty() ? List.of(DEFAULT_INCLUDE) : includes);
+        this.excludes = matchers(excludes == null ? List.of() : excludes);
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Walks the directory and passes every matching file to the consumer, in walk order.
+     *
+     * @return the number of files found
+     */
+    public long discover(final Path dir, final Consumer<Path> consumer) throws IOException {
+        final long[] found = new long[1];
+        walk(dir, dir, file -> {
+            found[0]++;
+            consumer.accept(file);
+        }, subDir -> { });
+        return found[0];
+    }
+
+    /**
+     * Walks {@code start}, {@code dir} or a directory below it, and passes on the matching files and
+     * every directory searched. Globs and depth are relative to {@code dir}.
+     */
+    public void walk(final Path dir, final Path start, final Consumer<Path> files, final Consumer<Path> dirs)
+            throws IOException {
+        final int depth = maxDepth == UNLIMITED_DEPTH ? maxDepth : maxDepth - depth(dir, start);
+        if (depth < 1) {
+            return;
+        }
+
+        final FileVisitor<Path> visitor = new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path subDir, final BasicFileAttributes attrs) {
+                if (!subDir.equals(dir) && matches(excludes, dir.relativize(subDir))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                dirs.accept(subDir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                if (isFile(file, attrs) && matchesFile(dir, file)) {
+                    files.accept(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                LOG.warning("Could not read %s: %s", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        };
+
+        Files.walkFileTree(start, EnumSet.noneOf(FileVisitOption.class), depth, visitor);
+    }
+
+    /**
+     * Whether a file below {@code dir} is one to discover, by its path only.
+     */
+    public boolean matchesFile(final Path dir, final Path file) {
+        final Path relative = dir.relativize(file);
+        return relative.getNameCount() <= maxDepth && matches(includes, relative) && !matches(excludes, relative);
+    }
+
+    private static int depth(final Path dir, final Path start) {
+        return dir.equals(start) ? 0 : dir.relativize(start).getNameCount();
+    }
+
+    public List<Path> find(final Path dir) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        discover(dir, files::add);
+        return files;
+    }
+
+    // Links are not followed into directories, but a link to a file is still a file
+    private static boolean isFile(final Path file, final BasicFileAttributes attrs) {
+        return attrs.isRegularFile() || attrs.isSymbolicLink() && Files.isRegularFile(file);
+    }
+
+    private static boolean matches(final List<PathMatcher> matchers, final Path relative) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<PathMatcher> matchers(final List<String> globs) {
+        final FileSystem fs = FileSystems.getDefault();
+        return globs.stream().map(glob -> fs.getPathMatcher("glob:" + glob)).toList();
+    }
+}
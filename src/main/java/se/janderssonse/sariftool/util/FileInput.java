@@ -0,0 +1,56 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+/**
+ * Byte input for JSON files. Small files are read through a plain stream, large files are memory
+ * mapped so Jackson decodes UTF-8 straight from the page cache without a char copy of the file.
+ */
+public final class FileInput {
+
+    static final long MAP_THRESHOLD = 1024 * 1024;
+    static final long MAX_SEGMENT = Integer.MAX_VALUE;
+
+    private FileInput() {
+    }
+
+    public static InputStream open(final Path path) throws IOException {
+        return open(path, MAP_THRESHOLD);
+    }
+
+    static InputStream open(final Path path, final long mapThreshold) throws IOException {
+        if (Files.size(path) < mapThreshold) {
+            return Files.newInputStream(path);
+        }
+        return new SequenceInputStream(Collections.enumeration(map(path)));
+    }
+
+    // A mapping stays valid after its channel is closed, a single mapping is limited to 2GB
+    private static List<InputStream> map(final Path path) throws IOException {
+        final List<InputStream> segments = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            for (long position = 0; position < size; position += MAX_SEGMENT) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAX_SEGMENT, size - position));
+                segments.add(new ByteBufferBackedInputStream(buffer));
+            }
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,132 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Timings and counts of the conversion of one SARIF file. A file is converted by one thread,
+ * which is the only one updating its metrics until they are added to {@link ConversionMetrics}.
+ */
+public final class FileMetrics {
+
+    public enum Stage {
+        READ, VALIDATE, PARSE, MAP;
+
+        public String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public static final long UNKNOWN = -1;
+
+    private final Path file;
+    private final long[] stageNanos = new long[Stage.values().length];
+    private long startNanos;
+    private long startAllocated = UNKNOWN;
+    private long wallNanos;
+    private long allocatedBytes = UNKNOWN;
+    private long bytesRead;
+    private long bytesWritten;
+    private long results;
+    private long issues;
+    private long excluded;
+    private long duplicates;
+    private boolean cached;
+
+    public FileMetrics(final Path file) {
+        this.file = file;
+        this.startNanos = System.nanoTime();
+    }
+
+    void started(final long nanos, final long allocated) {
+        startNanos = nanos;
+        startAllocated = allocated;
+    }
+
+    void finished(final long nanos, final long allocated) {
+        wallNanos = nanos - startNanos;
+        allocatedBytes = allocated == UNKNOWN || startAllocated == UNKNOWN ? UNKNOWN : allocated - startAllocated;
+    }
+
+    /**
+     * Adds the time from {@code start}, a {@link System#nanoTime()}, until now to the stage.
+     */
+    public void time(final Stage stage, final long start) {
+        stageNanos[stage.ordinal()] += System.nanoTime() - start;
+    }
+
+    public void addBytesRead(final long bytes) {
+        bytesRead += bytes;
+    }
+
+    public void addBytesWritten(final long bytes) {
+        bytesWritten += bytes;
+    }
+
+    public void addResults(final long count) {
+        results += count;
+    }
+
+    public void addIssue() {
+        issues++;
+    }
+
+    public void addExcluded() {
+        excluded++;
+    }
+
+    public void addDuplicate() {
+        duplicates++;
+    }
+
+    public void markCached() {
+        cached = true;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public long stageNanos(final Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    public long wallNanos() {
+        return wallNanos;
+    }
+
+    public long allocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    public long results() {
+        return results;
+    }
+
+    public long issues() {
+        return issues;
+    }
+
+    public long excluded() {
+        return excluded;
+    }
+
+    public long duplicates() {
+        return duplicates;
+    }
+
+    public boolean cached() {
+        return cached;
+    }
+}
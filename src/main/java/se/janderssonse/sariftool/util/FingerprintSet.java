@@ -0,0 +1,87 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+/**
+ * Set of 64 bit fingerprints in a single open addressing long array, about 16 bytes per
+ * fingerprint instead of the ~70 of a boxed HashSet entry. Safe to share between threads.
+ */
+public final class FingerprintSet {
+
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    // Zero marks a free slot, the fingerprint zero is stored in its own flag
+    private static final long FREE = 0L;
+
+    private long[] slots;
+    private int size;
+    private boolean containsFree;
+
+    public FingerprintSet() {
+        slots = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds the fingerprint, returns false when it was already in the set.
+     */
+    public synchronized boolean add(final long fingerprint) {
+        if (fingerprint == FREE) {
+            if (containsFree) {
+                return false;
+            }
+            containsFree = true;
+            size++;
+            return true;
+        }
+        int slot = slotOf(fingerprint, slots.length);
+        while (slots[slot] != FREE) {
+            if (slots[slot] == fingerprint) {
+                return false;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        slots[slot] = fingerprint;
+        size++;
+        // Keep the load below one half, probe runs stay short
+        if (size * 2 > slots.length) {
+            grow();
+        }
+        return true;
+    }
+
+    public synchronized boolean contains(final long fingerprint) {
+        if (fingerprint == FREE) {
+            return containsFree;
+        }
+        int slot = slotOf(fingerprint, slots.length);
+        while (slots[slot] != FREE) {
+            if (slots[slot] == fingerprint) {
+                return true;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        return false;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void grow() {
+        final long[] grown = new long[slots.length * 2];
+        for (long fingerprint : slots) {
+            if (fingerprint != FREE) {
+                int slot = slotOf(fingerprint, grown.length);
+                while (grown[slot] != FREE) {
+                    slot = (slot + 1) & (grown.length - 1);
+                }
+                grown[slot] = fingerprint;
+            }
+        }
+        slots = grown;
+    }
+
+    private static int slotOf(final long fingerprint, final int capacity) {
+        return (int) Hash64.mix(fingerprint) & (capacity - 1);
+    }
+}
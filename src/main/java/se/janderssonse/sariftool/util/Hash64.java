@@ -0,0 +1,46 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+/**
+ * 64 bit FNV-1a string hashing with a final avalanche step, for fingerprints that are
+ * compared by hash only. Not a cryptographic hash.
+ */
+public final class Hash64 {
+
+    public static final long SEED = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private Hash64() {
+    }
+
+    public static long hash(final long seed, final String value) {
+        long hash = seed;
+        if (value == null) {
+            return (hash ^ 0xff) * PRIME;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        // Separates "ab" + "c" from "a" + "bc"
+        return (hash ^ 0xfe) * PRIME;
+    }
+
+    public static long hash(final long seed, final int value) {
+        long hash = seed;
+        for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * PRIME;
+        }
+        return hash;
+    }
+
+    public static long mix(final long hash) {
+        long h = hash;
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
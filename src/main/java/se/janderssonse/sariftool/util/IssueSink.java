@@ -0,0 +1,16 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.io.IOException;
+
+import se.janderssonse.sariftool.model.sonar.Issue;
+
+/**
+ * Destination for mapped issues, written one at a time.
+ */
+public interface IssueSink {
+
+    void write(Issue issue) throws IOException;
+}
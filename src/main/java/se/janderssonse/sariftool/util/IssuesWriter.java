@@ -0,0 +1,86 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import se.janderssonse.sariftool.model.sonar.Issue;
+
+/**
+ * Writes a Sonar generic issue report one issue at a time, so the full list of issues
+ * never has to be held in memory. Closing the writer ends the issues array and the file.
+ */
+public final class IssuesWriter implements IssueSink, Closeable {
+
+    static final String ISSUES = "issues";
+
+    private final JsonGenerator generator;
+    private final CountingOutputStream out;
+    private final ObjectWriter issueWriter;
+    private long count;
+
+    IssuesWriter(final JsonGenerator generator, final CountingOutputStream out, final ObjectWriter issueWriter)
+            throws IOException {
+        this.generator = generator;
+        this.out = out;
+        this.issueWriter = issueWriter;
+        generator.writeStartObject();
+        generator.writeFieldName(ISSUES);
+        generator.writeStartArray();
+    }
+
+    @Override
+    public void write(final Issue issue) throws IOException {
+        issueWriter.writeValue(generator, issue);
+        count++;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Bytes written to the file so far, including what the generator still buffers.
+     * For gzip output this is the compressed size, up to what the compressor holds back.
+     */
+    public long bytesWritten() {
+        return out.count + Math.max(0, generator.getOutputBuffered());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } finally {
+            generator.close();
+        }
+    }
+
+    static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
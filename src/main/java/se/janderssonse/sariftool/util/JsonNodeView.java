@@ -0,0 +1,113 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Read-only {@link Map} and {@link java.util.List} views of a Jackson tree, for APIs that take plain
+ * Java values. A value is converted when it is read, so no second copy of a large document is built.
+ */
+final class JsonNodeView {
+
+    private JsonNodeView() {
+    }
+
+    static Object of(final JsonNode node) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return null;
+        }
+        if (node.isObject()) {
+            return new ObjectView(node);
+        }
+        if (node.isArray()) {
+            return new ArrayView(node);
+        }
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        if (node.isNumber()) {
+            return node.numberValue();
+        }
+        return node.asText();
+    }
+
+    private static final class ObjectView extends AbstractMap<String, Object> {
+        private final JsonNode node;
+
+        ObjectView(final JsonNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public Object get(final Object key) {
+            return key instanceof String field ? of(node.get(field)) : null;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return key instanceof String field && node.has(field);
+        }
+
+        @Override
+        public int size() {
+            return node.size();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    final Iterator<Entry<String, JsonNode>> fields = node.properties().iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return fields.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            final Entry<String, JsonNode> field = fields.next();
+                            return new SimpleImmutableEntry<>(field.getKey(), of(field.getValue()));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return node.size();
+                }
+            };
+        }
+    }
+
+    private static final class ArrayView extends AbstractList<Object> {
+        private final JsonNode node;
+
+        ArrayView(final JsonNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public Object get(final int index) {
+            if (index < 0 || index >= node.size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return of(node.get(index));
+        }
+
+        @Override
+        public int size() {
+            return node.size();
+        }
+    }
+}
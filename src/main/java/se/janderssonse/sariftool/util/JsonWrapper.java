@@ -3,53 +3,121 @@
 // SPDX-License-Identifier: Apache-2.0
 package se.janderssonse.sariftool.util;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 
+import se.janderssonse.sariftool.conf.LazyLogger;
+import se.janderssonse.sariftool.model.sonar.Issue;
+
+/**
+ * Shared JSON facility. The mapper and the readers and writers derived from it are immutable once
+ * built, so they are created once and used by all threads.
+ */
 public class JsonWrapper {
 
-    private static ObjectMapper mapper;
-    private static final Logger LOG = Logger.getLogger(JsonWrapper.class.getName());
+    private static final LazyLogger LOG = LazyLogger.getLogger(JsonWrapper.class);
 
-    private static ObjectMapper getMapper() {
-        if (mapper == null) {
-            mapper = JsonMapper.builder().addModule(new Jdk8Module())
+    // Initialized on first use, the class loader guarantees safe publication to all threads
+    private static final class Holder {
+        private static final ObjectMapper MAPPER = createMapper();
+        private static final ObjectReader TREE_READER = MAPPER.reader();
+        private static final ObjectWriter WRITER = MAPPER.writer();
+        private static final ObjectWriter PRETTY_WRITER = MAPPER.writerWithDefaultPrettyPrinter();
+        // Issues are streamed into one generator, a flush per issue would defeat its buffer
+        private static final ObjectWriter ISSUE_WRITER = MAPPER.writerFor(Issue.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        private static ObjectMapper createMapper() {
+            return JsonMapper.builder().addModule(new Jdk8Module())
                     .serializationInclusion(Include.NON_ABSENT)
                     .configure(MapperFeature.SORT_CREATOR_PROPERTIES_FIRST, true).build();
         }
-        return mapper;
+    }
+
+    /**
+     * Builds the shared mapper now instead of on first use.
+     */
+    public static void preload() {
+        getMapper();
+    }
+
+    private static ObjectMapper getMapper() {
+        return Holder.MAPPER;
     }
 
     public static void toFile(final Path path, final Object obj) {
-        LOG.fine("Writing: " + obj.toString() + " with path: " + path);
+        LOG.fine("Writing: %s with path: %s", obj, path);
         try {
-            getMapper().writerWithDefaultPrettyPrinter().writeValue(path.toFile(), obj);
+            Holder.PRETTY_WRITER.writeValue(path.toFile(), obj);
         } catch (IOException e) {
-            LOG.log(Level.SEVERE, "Could not write file" + path + " with object " + obj + " " + e.toString());
+            LOG.severe("Could not write file %s with object %s %s", path, obj.getClass().getSimpleName(), e);
         }
 
     }
 
+    public static IssuesWriter toIssuesWriter(final Path path, final OutputFormat format) throws IOException {
+        LOG.fine("Streaming issues to: %s", path);
+        final IssuesWriter.CountingOutputStream counted = new IssuesWriter.CountingOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)));
+        final OutputStream out = format.gzip() ? new GZIPOutputStream(counted) : counted;
+        final JsonGenerator generator = getMapper().createGenerator(out, JsonEncoding.UTF8);
+        if (format.pretty()) {
+            generator.useDefaultPrettyPrinter();
+        }
+        return new IssuesWriter(generator, counted, Holder.ISSUE_WRITER);
+    }
+
     public static JsonNode toNode(final FileReader reader) throws IOException {
-        return getMapper().readTree(reader);
+        return Holder.TREE_READER.readTree(reader);
     }
 
     public static JsonNode toNode(final File file) throws IOException {
-        return getMapper().readTree(new FileReader(file));
+        return toNode(file.toPath());
+    }
+
+    public static JsonNode toNode(final InputStream in) throws IOException {
+        return Holder.TREE_READER.readTree(in);
+    }
+
+    public static JsonNode toNode(final Path path) throws IOException {
+        try (InputStream in = FileInput.open(path)) {
+            return Holder.TREE_READER.readTree(in);
+        }
+    }
+
+    /**
+     * The node as a plain Java value, objects and arrays as read-only {@link java.util.Map} and
+     * {@link java.util.List} views of the tree rather than copies of it.
+     */
+    public static Object toValue(final JsonNode node) {
+        return JsonNodeView.of(node);
+    }
+
+    public static JsonParser toParser(final Path path) throws IOException {
+        return getMapper().createParser(FileInput.open(path));
     }
 
     public static String toJson(final Object object) throws IOException {
-        return getMapper().writeValueAsString(object);
+        return Holder.WRITER.writeValueAsString(object);
     }
 }
@@ -0,0 +1,40 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.nio.file.Path;
+
+/**
+ * Heap bytes a conversion may hold for parsed results, and where results beyond that are spilled.
+ *
+ * @param maxBytes the budget, 0 for no limit
+ * @param spillDir directory for spill files, null for the default temporary directory
+ */
+public record MemoryBudget(long maxBytes, Path spillDir) {
+
+    public static final MemoryBudget UNLIMITED = new MemoryBudget(0, null);
+
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    public MemoryBudget {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Memory budget can not be negative, was " + maxBytes);
+        }
+    }
+
+    public static MemoryBudget ofMegabytes(final long megabytes, final Path spillDir) {
+        return new MemoryBudget(megabytes * MEGABYTE, spillDir);
+    }
+
+    public boolean limited() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * The budget of one of several conversions running at the same time.
+     */
+    public MemoryBudget share(final int parts) {
+        return limited() && parts > 1 ? new MemoryBudget(Math.max(1, maxBytes / parts), spillDir) : this;
+    }
+}
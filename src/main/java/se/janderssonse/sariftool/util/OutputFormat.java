@@ -0,0 +1,13 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+public record OutputFormat(boolean pretty, boolean gzip) {
+
+    public static final OutputFormat DEFAULT = new OutputFormat(true, false);
+
+    public String fileSuffix() {
+        return gzip ? ".json.gz" : ".json";
+    }
+}
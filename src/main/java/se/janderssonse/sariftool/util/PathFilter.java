@@ -0,0 +1,148 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Exclude path matcher. Patterns are compiled once, case insensitive, those without groups or inline
+ * flags joined into a single pattern. A pattern with groups is matched on its own, as joining would
+ * renumber them for its backreferences, as is one with flags, which would apply to its neighbours.
+ *
+ * A plain pattern is a regex matching anywhere in the path, as before. A pattern prefixed
+ * with {@code glob:} is a glob matching the whole path, e.g. {@code glob:**}{@code /test/**}.
+ * A {@code regex:} prefix can be used for a regex that starts with "glob:".
+ */
+public final class PathFilter {
+
+    public static final String GLOB_PREFIX = "glob:";
+    public static final String REGEX_PREFIX = "regex:";
+
+    private static final PathFilter NONE = new PathFilter(null, List.of());
+    // e.g. (?i) or (?-s:, a false match only costs a pattern of its own
+    private static final Pattern INLINE_FLAGS = Pattern.compile("\\(\\?[idmsuxU-]*[idmsuxU][idmsuxU-]*[:)]");
+
+    // Null when all patterns are matched on their own
+    private final Pattern joined;
+    private final List<Pattern> standalone;
+
+    private PathFilter(final Pattern joined, final List<Pattern> standalone) {
+        this.joined = joined;
+        this.standalone = standalone;
+    }
+
+    public static PathFilter of(final List<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            return NONE;
+        }
+        final List<String> joinable = new ArrayList<>();
+        final List<Pattern> standalone = new ArrayList<>();
+        for (String regex : patterns.stream().map(PathFilter::toRegex).toList()) {
+            // Compiled alone first, so an invalid pattern fails by itself and is not read into the next
+            final Pattern compiled = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+            if (compiled.matcher("").groupCount() > 0 || INLINE_FLAGS.matcher(regex).find()) {
+                standalone.add(compiled);
+            } else {
+                joinable.add(regex);
+            }
+        }
+        final Pattern joined = joinable.isEmpty() ? null
+                : Pattern.compile(joinable.stream().map(regex -> "(?:" + regex + ")").collect(Collectors.joining("|")),
+                        Pattern.CASE_INSENSITIVE);
+        return new PathFilter(joined, List.copyOf(standalone));
+    }
+
+    public boolean isEmpty() {
+        return joined == null && standalone.isEmpty();
+    }
+
+    public boolean excludes(final String path) {
+        if (path == null) {
+            return false;
+        }
+        if (joined != null && joined.matcher(path).find()) {
+            return true;
+        }
+        for (Pattern pattern : standalone) {
+            if (pattern.matcher(path).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String toRegex(final String pattern) {
+        if (pattern.startsWith(GLOB_PREFIX)) {
+            return "^" + globToRegex(pattern.substring(GLOB_PREFIX.length())) + "$";
+        }
+        if (pattern.startsWith(REGEX_PREFIX)) {
+            return pattern.substring(REGEX_PREFIX.length());
+        }
+        return pattern;
+    }
+
+    static String globToRegex(final String glob) {
+        final StringBuilder regex = new StringBuilder(glob.length() * 2);
+        boolean inGroup = false;
+        int i = 0;
+        while (i < glob.length()) {
+            final char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> {
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        if (i + 2 < glob.length() && glob.charAt(i + 2) == '/') {
+                            regex.append("(?:.*/)?");
+                            i += 2;
+                        } else {
+                            regex.append(".*");
+                            i++;
+                        }
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                }
+                case '?' -> regex.append("[^/]");
+                case '{' -> {
+                    regex.append("(?:");
+                    inGroup = true;
+                }
+                case '}' -> {
+                    regex.append(inGroup ? ")" : "\\}");
+                    inGroup = false;
+                }
+                case ',' -> regex.append(inGroup ? "|" : ",");
+                case '[' -> {
+                    final int end = glob.indexOf(']', i + 1);
+                    if (end < 0) {
+                        regex.append("\\[");
+                    } else {
+                        String set = glob.substring(i + 1, end);
+                        if (set.startsWith("!")) {
+                            set = "^" + set.substring(1);
+                        }
+                        regex.append('[').append(set.replace("\\", "\\\\")).append(']');
+                        i = end;
+                    }
+                }
+                default -> {
+                    if ("\\.^$+()|]".indexOf(c) >= 0) {
+                        regex.append('\\');
+                    }
+                    regex.append(c);
+                }
+            }
+            i++;
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%npattern=%s%nstandalone=%s%n]", this.getClass().getName(),
+                joined != null ? joined : "", standalone);
+    }
+}
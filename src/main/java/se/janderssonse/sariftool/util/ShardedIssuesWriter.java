@@ -0,0 +1,112 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import se.janderssonse.sariftool.conf.LazyLogger;
+import se.janderssonse.sariftool.model.sonar.Issue;
+
+/**
+ * Writes the issues of many SARIF files to one report, <name>.json. With a shard size, the report is
+ * split in <name>-1.json, <name>-2.json and so on, a shard being closed once it reaches the size.
+ * Writes are synchronized, so files converted in parallel can share the writer. When closed, the
+ * shards left from an earlier, larger report are removed, so they are not imported with this one.
+ * A shard is written aside and moved into place when closed, so a reader never sees it half written.
+ */
+public final class ShardedIssuesWriter implements IssueSink, Closeable {
+
+    private static final LazyLogger LOG = LazyLogger.getLogger(ShardedIssuesWriter.class);
+
+    private final Path outputDir;
+    private final String name;
+    private final OutputFormat format;
+    private final long maxShardBytes;
+    private final List<Path> shards = new ArrayList<>();
+
+    private IssuesWriter current;
+    private long count;
+
+    /**
+     * @param maxShardBytes shard size in bytes, 0 to write a single report
+     */
+    public ShardedIssuesWriter(final Path outputDir, final String name, final OutputFormat format,
+            final long maxShardBytes) {
+        this.outputDir = outputDir;
+        this.name = name;
+        this.format = format;
+        this.maxShardBytes = maxShardBytes;
+    }
+
+    @Override
+    public synchronized void write(final Issue issue) throws IOException {
+        if (current == null) {
+            openShard();
+        }
+        current.write(issue);
+        count++;
+        if (maxShardBytes > 0 && current.bytesWritten() >= maxShardBytes) {
+            closeShard();
+        }
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized List<Path> shards() {
+        return List.copyOf(shards);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        // An empty report is still written, so the report path given to the scanner exists
+        if (current == null && shards.isEmpty()) {
+            openShard();
+        }
+        if (current != null) {
+            closeShard();
+        }
+        removeStaleShards();
+    }
+
+    private void removeStaleShards() throws IOException {
+        final Pattern report = Pattern.compile(Pattern.quote(name) + "(-\\d+)?" + Pattern.quote(format.fileSuffix()));
+        try (Stream<Path> files = Files.list(outputDir)) {
+            for (Path stale : files.filter(file -> report.matcher(file.getFileName().toString()).matches())
+                    .filter(file -> !shards.contains(file)).toList()) {
+                Files.deleteIfExists(stale);
+                LOG.info("Removed report left from an earlier merge: '%s'", stale);
+            }
+        }
+    }
+
+    private static Path inProgress(final Path target) {
+        return target.resolveSibling(target.getFileName() + ".tmp");
+    }
+
+    private void openShard() throws IOException {
+        final String suffix = maxShardBytes > 0 ? "-" + (shards.size() + 1) : "";
+        final Path target = outputDir.resolve(name + suffix + format.fileSuffix());
+        current = JsonWrapper.toIssuesWriter(inProgress(target), format);
+        shards.add(target);
+    }
+
+    private void closeShard() throws IOException {
+        final IssuesWriter closing = current;
+        current = null;
+        closing.close();
+        final Path target = shards.get(shards.size() - 1);
+        Files.move(inProgress(target), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.info("Wrote file: target '%s', issues '%s'", target, closing.count());
+    }
+}
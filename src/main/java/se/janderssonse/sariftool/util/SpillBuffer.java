@@ -0,0 +1,180 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Append only list that keeps its elements in memory up to a byte budget and writes the rest to a
+ * temporary file, with a {@link Codec}. Iterating reads the spilled elements back one at a time, so
+ * at most the budget and one spilled element are held. The list is meant to be iterated,
+ * {@link #get(int)} walks it. Closing it deletes the file.
+ */
+public final class SpillBuffer<T> extends AbstractList<T> implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public interface Codec<T> {
+
+        /**
+         * Estimated heap bytes held by the element.
+         */
+        long weigh(T element);
+
+        void write(DataOutputStream out, T element) throws IOException;
+
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private final Codec<T> codec;
+    private final long maxBytes;
+    private final Path spillDir;
+    private final List<T> memory = new ArrayList<>();
+    private final List<Closeable> readers = new ArrayList<>();
+    private long memoryBytes;
+    private Path spillFile;
+    private DataOutputStream spill;
+    private int spilled;
+
+    /**
+     * @param spillDir directory for the temporary file, null for the default temporary directory
+     */
+    public SpillBuffer(final Codec<T> codec, final long maxBytes, final Path spillDir) {
+        this.codec = codec;
+        this.maxBytes = maxBytes;
+        this.spillDir = spillDir;
+    }
+
+    @Override
+    public boolean add(final T element) {
+        final long bytes = codec.weigh(element);
+        // Once spilling, later elements are spilled too, so the file keeps the order
+        if (spill == null && memoryBytes + bytes <= maxBytes) {
+            memory.add(element);
+            memoryBytes += bytes;
+            return true;
+        }
+        try {
+            if (spill == null) {
+                spillFile = spillDir == null ? Files.createTempFile("sariftool", ".spill")
+                        : Files.createTempFile(spillDir, "sariftool", ".spill");
+                spill = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile), BUFFER_SIZE));
+            }
+            codec.write(spill, element);
+            spilled++;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill to " + spillFile, e);
+        }
+    }
+
+    @Override
+    public T get(final int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        if (index < memory.size()) {
+            return memory.get(index);
+        }
+        final Iterator<T> elements = iterator();
+        for (int i = 0; i < index; i++) {
+            elements.next();
+        }
+        return elements.next();
+    }
+
+    @Override
+    public int size() {
+        return memory.size() + spilled;
+    }
+
+    public long memoryBytes() {
+        return memoryBytes;
+    }
+
+    public int spilledCount() {
+        return spilled;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if (spill == null) {
+            return memory.iterator();
+        }
+        try {
+            spill.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill to " + spillFile, e);
+        }
+        return new SpillIterator();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Closeable reader : readers) {
+            reader.close();
+        }
+        readers.clear();
+        if (spill != null) {
+            spill.close();
+            spill = null;
+            Files.deleteIfExists(spillFile);
+        }
+    }
+
+    private final class SpillIterator implements Iterator<T> {
+        private final Iterator<T> inMemory = memory.iterator();
+        private final int count = spilled;
+        private DataInputStream in;
+        private int read;
+
+        @Override
+        public boolean hasNext() {
+            return inMemory.hasNext() || read < count;
+        }
+
+        @Override
+        public T next() {
+            if (inMemory.hasNext()) {
+                return inMemory.next();
+            }
+            if (read >= count) {
+                throw new NoSuchElementException();
+            }
+            try {
+                if (in == null) {
+                    in = open();
+                }
+                final T element = codec.read(in);
+                read++;
+                if (read == count) {
+                    in.close();
+                }
+                return element;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read back " + spillFile, e);
+            }
+        }
+    }
+
+    private synchronized DataInputStream open() throws IOException {
+        final DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(spillFile), BUFFER_SIZE));
+        readers.add(in);
+        return in;
+    }
+}
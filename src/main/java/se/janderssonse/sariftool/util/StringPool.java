@@ -0,0 +1,28 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local string interner, so repeated rule ids and uris in a log share one instance.
+ * Not thread-safe, use one pool per parse.
+ */
+public final class StringPool {
+
+    private final Map<String, String> pool = new HashMap<>();
+
+    public String intern(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final String pooled = pool.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+
+    public int size() {
+        return pool.size();
+    }
+}
@@ -8,25 +8,28 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.vertx.core.json.JsonObject;
 import io.vertx.json.schema.Draft;
 import io.vertx.json.schema.JsonSchema;
 import io.vertx.json.schema.JsonSchemaOptions;
 import io.vertx.json.schema.OutputUnit;
 import io.vertx.json.schema.Validator;
 
-import java.util.logging.Logger;
+import se.janderssonse.sariftool.conf.LazyLogger;
 
 public final class Util {
 
     private Util() {
     }
 
-    private static final Logger LOG = Logger.getLogger(Util.class.getName());
+    private static final LazyLogger LOG = LazyLogger.getLogger(Util.class);
 
     public static String removeFileExtension(final Path file, final boolean removeAllExtensions) {
         return file.getFileName().toString().replaceAll("\\.\\w+$", "");
@@ -34,40 +37,61 @@ public final class Util {
 
     public static List<Path> findFiles(final Path dir, final String suffix) {
 
-        try (Stream<Path> walk = Files.walk(dir)) {
-            return walk
-                    .filter(file -> !Files.isDirectory(file))
-                    .map(it -> it.toString())
-                    .filter(path -> path.endsWith(suffix))
-                    .map(path -> Paths.get(path))
-                    .toList();
+        try {
+            return new FileDiscovery(List.of("**" + suffix), List.of(), FileDiscovery.UNLIMITED_DEPTH).find(dir);
         } catch (IOException e) {
-            LOG.severe("IO failed" + e.toString());
+            LOG.severe("IO failed %s", e);
             return List.of();
         }
     }
 
-    public static boolean schemaValidate(final Path sarifFile) throws IllegalArgumentException {
-        try {
-            InputStream s = Util.class.getResourceAsStream("/sarif-schema-2.1.0.json");
-
-            String schematext = new String(s.readAllBytes(), StandardCharsets.UTF_8);
-            String filetext = Files.readString(sarifFile);
-            io.vertx.core.json.JsonObject json = new io.vertx.core.json.JsonObject(filetext);
-            JsonSchema schema = JsonSchema.of(new io.vertx.core.json.JsonObject(schematext));
-            OutputUnit result = Validator.create(
-                    schema,
-                    new JsonSchemaOptions().setDraft(Draft.DRAFT202012).setBaseUri("http://"))
-                    .validate(json);
-            LOG.fine("validation " + result.toString());
-            if (!result.getValid()) {
-                throw new IllegalArgumentException(
-                        String.format("Validation failed: %s Err: %s ", sarifFile.getFileName(),
-                                result.getErrors().stream().map(o -> o.toString()).collect(Collectors.joining("\n"))));
+    private static final String SARIF_SCHEMA = "/sarif-schema-2.1.0.json";
+
+    // The schema is read and compiled once, on first use, and the validator is shared by all threads
+    private static final class SchemaHolder {
+        private static final Validator VALIDATOR = createValidator();
+
+        private static Validator createValidator() {
+            try (InputStream s = Util.class.getResourceAsStream(SARIF_SCHEMA)) {
+                if (s == null) {
+                    throw new IllegalStateException("Could not find " + SARIF_SCHEMA + " on classpath");
+                }
+                String schematext = new String(s.readAllBytes(), StandardCharsets.UTF_8);
+                JsonSchema schema = JsonSchema.of(new JsonObject(schematext));
+                return Validator.create(
+                        schema,
+                        new JsonSchemaOptions().setDraft(Draft.DRAFT202012).setBaseUri("http://"));
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read " + SARIF_SCHEMA, e);
             }
+        }
+    }
 
+    /**
+     * Compiles the SARIF schema now instead of on the first validation.
+     */
+    public static void preloadSchema() {
+        Objects.requireNonNull(SchemaHolder.VALIDATOR);
+    }
+
+    public static boolean schemaValidate(final Path sarifFile) throws IllegalArgumentException {
+        try {
+            return schemaValidate(JsonWrapper.toNode(sarifFile), sarifFile);
         } catch (IOException e) {
-            LOG.severe("validation failed" + e.getMessage());
+            LOG.severe("validation failed %s", e.getMessage());
+        }
+        return true;
+    }
+
+    public static boolean schemaValidate(final JsonNode sarifNode, final Path sarifFile)
+            throws IllegalArgumentException {
+        // Validated through a view of the tree, a copy would double the heap held for a large log
+        OutputUnit result = SchemaHolder.VALIDATOR.validate(JsonWrapper.toValue(sarifNode));
+        LOG.fine("validation %s", result);
+        if (!result.getValid()) {
+            throw new IllegalArgumentException(
+                    String.format("Validation failed: %s Err: %s ", sarifFile.getFileName(),
+                            result.getErrors().stream().map(o -> o.toString()).collect(Collectors.joining("\n"))));
         }
         return true;
     }
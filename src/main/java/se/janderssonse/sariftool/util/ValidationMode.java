@@ -0,0 +1,23 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import java.util.Locale;
+
+/**
+ * How a SARIF file is checked before it is converted. FULL validates against the SARIF schema,
+ * STRUCTURAL only checks the elements the conversion reads, while parsing them, and NONE trusts the input.
+ */
+public enum ValidationMode {
+    FULL, STRUCTURAL, NONE;
+
+    public static ValidationMode of(final String mode) {
+        try {
+            return valueOf(mode.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    String.format("Unknown validation '%s', expected full, structural or none", mode), e);
+        }
+    }
+}
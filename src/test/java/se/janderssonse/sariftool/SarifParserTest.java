@@ -7,14 +7,20 @@ package se.janderssonse.sariftool;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import se.janderssonse.sariftool.model.sarif.CompactResult;
 import se.janderssonse.sariftool.model.sarif.Driver;
 import se.janderssonse.sariftool.model.sarif.Location;
 import se.janderssonse.sariftool.model.sarif.Region;
 import se.janderssonse.sariftool.model.sarif.Result;
 import se.janderssonse.sariftool.model.sarif.Rule;
+import se.janderssonse.sariftool.model.sarif.Run;
 import se.janderssonse.sariftool.model.sarif.RuleProperties;
+import se.janderssonse.sariftool.util.FileMetrics;
+import se.janderssonse.sariftool.util.MemoryBudget;
+import se.janderssonse.sariftool.util.ValidationMode;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -23,14 +29,19 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @ExtendWith(MockitoExtension.class)
 class SarifParserTest {
 
+    @TempDir
+    Path tmpDir;
+
     @Test
     void when_invalid_sarif_given_parsing_did_not_occur() throws URISyntaxException, IOException {
 
@@ -136,6 +147,145 @@ class SarifParserTest {
         assertEquals(88, region.endColumn().get());
     }
 
+    @Test
+    void when_multiple_runs_given_each_run_keeps_its_rules() throws Exception {
+
+        final Path sarifFile = Paths.get(ClassLoader.getSystemResource("multiRunInput.sarif").toURI());
+        SarifParser parser = new SarifParser(sarifFile);
+
+        assertTrue(parser.validated());
+        assertEquals(2, parser.getRuns().size());
+        assertEquals(4, parser.getResults().size());
+        assertEquals(4, parser.getRules().size());
+
+        final Run first = parser.getRuns().get(0);
+        assertEquals(1, first.rules().size());
+        assertEquals(1, first.extensionRules().size());
+        assertEquals("java/unused-local", first.extensionRules().get(0).get(0).id().get());
+        assertEquals(0, first.results().get(1).toolComponent());
+
+        final Run second = parser.getRuns().get(1);
+        assertEquals(2, second.rules().size());
+        assertEquals("java/unused-local", second.rules().get(0).id().get());
+    }
+
+    @Test
+    void when_structural_validation_given_it_parses_like_full_validation() throws Exception {
+
+        try (Stream<Path> files = Files.walk(Path.of("src/test/resources"))) {
+            for (Path sarifFile : files.filter(file -> file.toString().endsWith(".sarif")).toList()) {
+                final SarifParser full = new SarifParser(sarifFile);
+                final SarifParser structural = new SarifParser(sarifFile, new FileMetrics(sarifFile),
+                        ValidationMode.STRUCTURAL);
+
+                if (full.validated()) {
+                    assertTrue(structural.validated(), sarifFile.toString());
+                    assertEquals(full.getRules(), structural.getRules());
+                    assertEquals(full.getResults(), structural.getResults());
+                }
+            }
+        }
+    }
+
+    @Test
+    void when_structural_validation_given_a_bad_region_parsing_did_not_occur() throws Exception {
+
+        final Path sarifFile = Paths.get(ClassLoader.getSystemResource("exampleWithTestDir.sarif").toURI());
+        final Path badRegion = Files.writeString(tmpDir.resolve("badRegion.sarif"),
+                Files.readString(sarifFile).replaceFirst("\"startLine\"\\s*:\\s*\\d+", "\"startLine\": \"one\""));
+
+        assertFalse(new SarifParser(badRegion, new FileMetrics(badRegion), ValidationMode.STRUCTURAL).validated());
+        assertTrue(new SarifParser(badRegion, new FileMetrics(badRegion), ValidationMode.NONE).validated());
+    }
+
+    @Test
+    void when_memory_budget_is_exceeded_results_are_spilled_and_parsed_like_in_memory() throws Exception {
+
+        final MemoryBudget tiny = new MemoryBudget(1, tmpDir);
+        try (Stream<Path> files = Files.walk(Path.of("src/test/resources"))) {
+            for (Path sarifFile : files.filter(file -> file.toString().endsWith(".sarif")).toList()) {
+                final SarifParser full = new SarifParser(sarifFile);
+                try (SarifParser streamed = new SarifParser(sarifFile, new FileMetrics(sarifFile),
+                        ValidationMode.STRUCTURAL, tiny)) {
+
+                    if (full.validated()) {
+                        assertTrue(streamed.streamed(), sarifFile.toString());
+                        assertTrue(streamed.validated(), sarifFile.toString());
+                        assertEquals(full.getDriver(), streamed.getDriver());
+                        assertEquals(full.getRuns().size(), streamed.getRuns().size());
+                        assertEquals(full.getRules(), streamed.getRules());
+                        assertEquals(full.getResults(), List.copyOf(streamed.getResults()));
+                    }
+                }
+                try (Stream<Path> spilled = Files.list(tmpDir)) {
+                    assertEquals(0, spilled.count(), sarifFile.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    void when_streamed_structural_validation_it_accepts_what_tree_validation_accepts() throws Exception {
+
+        final MemoryBudget tiny = new MemoryBudget(1, tmpDir);
+        try (Stream<Path> files = Files.walk(Path.of("src/test/resources"))) {
+            for (Path sarifFile : files.filter(file -> file.toString().endsWith(".sarif")).toList()) {
+                final SarifParser tree = new SarifParser(sarifFile, new FileMetrics(sarifFile),
+                        ValidationMode.STRUCTURAL);
+                try (SarifParser streamed = new SarifParser(sarifFile, new FileMetrics(sarifFile),
+                        ValidationMode.STRUCTURAL, tiny)) {
+                    assertEquals(tree.validated(), streamed.validated(), sarifFile.toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    void when_streamed_file_has_no_runs_parsing_did_not_occur() throws Exception {
+
+        final MemoryBudget tiny = new MemoryBudget(1, tmpDir);
+        final Path noRuns = Files.writeString(tmpDir.resolve("noRuns.sarif"), "{\"version\": \"2.1.0\"}");
+        final Path noDriverName = Files.writeString(tmpDir.resolve("noDriverName.sarif"),
+                "{\"version\": \"2.1.0\", \"runs\": [{\"tool\": {\"driver\": {}}, \"results\": []}]}");
+
+        for (Path sarifFile : List.of(noRuns, noDriverName)) {
+            try (SarifParser streamed = new SarifParser(sarifFile, new FileMetrics(sarifFile), ValidationMode.FULL,
+                    tiny)) {
+                assertTrue(streamed.streamed(), sarifFile.toString());
+                assertFalse(streamed.validated(), sarifFile.toString());
+            }
+        }
+    }
+
+    @Test
+    void when_model_file_is_written_it_maps_like_the_parsed_file() throws Exception {
+
+        try (Stream<Path> files = Files.walk(Path.of("src/test/resources"))) {
+            for (Path sarifFile : files.filter(file -> file.toString().endsWith(".sarif")).toList()) {
+                final SarifParser parsed = new SarifParser(sarifFile);
+                if (!parsed.validated()) {
+                    continue;
+                }
+                final Path modelFile = tmpDir.resolve(sarifFile.getFileName() + ".model");
+                SarifModelFile.write(parsed, modelFile);
+
+                final SarifParser mapped = SarifParser.fromModel(sarifFile, modelFile, new FileMetrics(sarifFile));
+
+                assertTrue(mapped.validated(), sarifFile.toString());
+                assertEquals(parsed.getVersion(), mapped.getVersion());
+                assertEquals(parsed.getSchema(), mapped.getSchema());
+                assertEquals(parsed.getDriver(), mapped.getDriver());
+                assertEquals(parsed.getRules(), mapped.getRules());
+                assertEquals(parsed.getResults(), mapped.getResults());
+                assertEquals(parsed.getCompactResults().stream().map(CompactResult::fingerprint).toList(),
+                        mapped.getCompactResults().stream().map(CompactResult::fingerprint).toList());
+                for (int i = 0; i < parsed.getRuns().size(); i++) {
+                    assertEquals(parsed.getRuns().get(i).ruleTables(), mapped.getRuns().get(i).ruleTables());
+                }
+            }
+        }
+    }
+
     private void assertResult(Result result) {
 
         assertEquals("java/misleading-indentation", result.ruleId().get());
@@ -0,0 +1,151 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package se.janderssonse.sariftool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import se.janderssonse.sariftool.model.sarif.Driver;
+import se.janderssonse.sariftool.model.sarif.Result;
+import se.janderssonse.sariftool.model.sarif.Rule;
+import se.janderssonse.sariftool.util.JsonWrapper;
+import se.janderssonse.sariftool.util.MemoryBudget;
+
+class SarifStreamParserTest {
+    @TempDir
+    Path tmpDir;
+
+    @Test
+    void when_valid_sariffile_streamed_it_equals_tree_parsing() throws URISyntaxException, IOException {
+
+        final Path sarifFile = Paths.get(ClassLoader.getSystemResource("exampleWithTestDir.sarif").toURI());
+        final SarifParser treeParser = new SarifParser(sarifFile);
+        final Collector collector = new Collector();
+
+        new SarifStreamParser(sarifFile).parse(collector);
+
+        assertEquals(treeParser.getVersion().get(), collector.version);
+        assertEquals(treeParser.getSchema().get(), collector.schema);
+        assertEquals(treeParser.getDriver().get(), collector.driver);
+        assertEquals(treeParser.getRules(), collector.rules);
+        assertEquals(treeParser.getResults(), collector.results);
+    }
+
+    @Test
+    void when_rules_in_extension_they_are_streamed() throws URISyntaxException, IOException {
+
+        final Path sarifFile = Paths.get(ClassLoader.getSystemResource("rulesInExtensions.sarif").toURI());
+        final Collector collector = new Collector();
+
+        new SarifStreamParser(sarifFile).parse(collector);
+
+        assertEquals("2.5.5", collector.driver.semanticVersion().get());
+        assertEquals(166, collector.rules.size());
+        assertEquals("java/sql-injection", collector.rules.get(0).id().get());
+        assertEquals(1, collector.results.size());
+        assertEquals(64, collector.results.get(0).ruleIndex().get());
+    }
+
+    @Test
+    void when_results_come_before_the_tool_they_are_spilled_until_the_rules_are_read() throws Exception {
+
+        final Path sarifFile = Paths.get(ClassLoader.getSystemResource("multiRunInput.sarif").toURI());
+        final ObjectNode log = (ObjectNode) JsonWrapper.toNode(sarifFile);
+        for (JsonNode run : log.get("runs")) {
+            ((ObjectNode) run).set("tool", ((ObjectNode) run).remove("tool"));
+        }
+        final Path resultsFirst = Files.writeString(tmpDir.resolve("resultsFirst.sarif"), JsonWrapper.toJson(log));
+        final Path spillDir = Files.createDirectory(tmpDir.resolve("spill"));
+        final Collector expected = new Collector();
+        final Collector collector = new Collector();
+
+        new SarifStreamParser(sarifFile).parse(expected);
+        new SarifStreamParser(resultsFirst, new MemoryBudget(1, spillDir)).parse(collector);
+
+        assertEquals(expected.rules, collector.rules);
+        assertEquals(expected.results, collector.results);
+        try (Stream<Path> spilled = Files.list(spillDir)) {
+            assertEquals(0, spilled.count());
+        }
+    }
+
+    @Test
+    void when_root_is_not_an_object_parsing_fails() throws IOException {
+
+        final Path sarifFile = Files.writeString(tmpDir.resolve("array.sarif"), "[]");
+
+        assertThrows(IllegalArgumentException.class, () -> new SarifStreamParser(sarifFile).parse(new Collector()));
+    }
+
+    @Test
+    void when_version_is_an_object_its_fields_are_not_read_as_the_root() throws Exception {
+
+        final Path sarifFile = Paths.get(ClassLoader.getSystemResource("exampleWithTestDir.sarif").toURI());
+        final ObjectNode log = (ObjectNode) JsonWrapper.toNode(sarifFile);
+        final JsonNode runs = log.remove("runs");
+        log.putObject("version").putArray("runs");
+        log.set("runs", runs);
+        final Path objectVersion = Files.writeString(tmpDir.resolve("objectVersion.sarif"), JsonWrapper.toJson(log));
+        final Collector collector = new Collector();
+
+        new SarifStreamParser(objectVersion).parse(collector);
+
+        assertNull(collector.version);
+        assertEquals(2, collector.results.size());
+        final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new SarifStreamParser(objectVersion, new StructuralValidator(objectVersion), true,
+                        MemoryBudget.UNLIMITED).parse(new Collector()));
+        assertEquals("Validation failed: objectVersion.sarif Err: version is not a string", e.getMessage());
+    }
+
+    private static final class Collector implements SarifStreamParser.Listener {
+        private String version;
+        private String schema;
+        private Driver driver;
+        private final List<Rule> rules = new ArrayList<>();
+        private final List<Result> results = new ArrayList<>();
+
+        @Override
+        public void onVersion(final String v) {
+            version = v;
+        }
+
+        @Override
+        public void onSchema(final String s) {
+            schema = s;
+        }
+
+        @Override
+        public void onDriver(final Driver d) {
+            driver = d;
+        }
+
+        @Override
+        public void onRule(final Rule rule) {
+            rules.add(rule);
+        }
+
+        @Override
+        public void onResult(final Result result) {
+            results.add(result);
+        }
+    }
+}
@@ -4,16 +4,20 @@
 package se.janderssonse.sariftool.cli;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
+import nl.altindag.log.LogCaptor;
 import picocli.CommandLine;
 import se.janderssonse.sariftool.util.JsonWrapper;
 import se.janderssonse.sariftool.util.Util;
@@ -50,6 +54,232 @@ class ConvertCommandTest {
                 "src/test/resources/multiModuleResult.json");
     }
 
+    @Test
+    void parallelDirectoryTest() throws Exception, IOException {
+        final File sourceDir = new File(tmpDir, "sources");
+        final File outputDir = new File(tmpDir, "output");
+        assertTrue(sourceDir.mkdir());
+        assertTrue(outputDir.mkdir());
+        Files.copy(Path.of("src/test/resources/exampleWithTestDir.sarif"), sourceDir.toPath().resolve("a.sarif"));
+        Files.copy(Path.of("src/test/resources/multiModuleInput.sarif"), sourceDir.toPath().resolve("b.sarif"));
+        Files.copy(Path.of("src/test/resources/invalid.sarif"), sourceDir.toPath().resolve("c.sarif"));
+
+        int exitCode = new CommandLine(new SarifToolCLI()).execute("convert", "-s=" + sourceDir,
+                "-o=" + outputDir, "--threads=3");
+
+        assertEquals(0, exitCode);
+        assertEquals(JsonWrapper.toJson(JsonWrapper.toNode(new File("src/test/resources/expectedResult.json"))),
+                JsonWrapper.toJson(JsonWrapper.toNode(new File(outputDir, "a.json"))));
+        assertEquals(JsonWrapper.toJson(JsonWrapper.toNode(new File("src/test/resources/multiModuleResult.json"))),
+                JsonWrapper.toJson(JsonWrapper.toNode(new File(outputDir, "b.json"))));
+        assertFalse(new File(outputDir, "c.json").exists());
+    }
+
+    @Test
+    void sameNamedFilesTest() throws Exception, IOException {
+        final File sourceDir = new File(tmpDir, "sources");
+        final File outputDir = new File(tmpDir, "output");
+        assertTrue(new File(sourceDir, "m1").mkdirs());
+        assertTrue(new File(sourceDir, "m2").mkdirs());
+        assertTrue(outputDir.mkdir());
+        Files.copy(Path.of("src/test/resources/exampleWithTestDir.sarif"), sourceDir.toPath().resolve("m1/results.sarif"));
+        Files.copy(Path.of("src/test/resources/multiModuleInput.sarif"), sourceDir.toPath().resolve("m2/results.sarif"));
+
+        int exitCode = new CommandLine(new SarifToolCLI()).execute("convert", "-s=" + sourceDir,
+                "-o=" + outputDir, "--threads=2");
+
+        assertEquals(0, exitCode);
+        assertFalse(new File(outputDir, "results.json").exists());
+        assertEquals(JsonWrapper.toJson(JsonWrapper.toNode(new File("src/test/resources/expectedResult.json"))),
+                JsonWrapper.toJson(JsonWrapper.toNode(new File(outputDir, "m1/results.json"))));
+        assertEquals(JsonWrapper.toJson(JsonWrapper.toNode(new File("src/test/resources/multiModuleResult.json"))),
+                JsonWrapper.toJson(JsonWrapper.toNode(new File(outputDir, "m2/results.json"))));
+    }
+
+    @Test
+    void sameTargetTest() throws Exception, IOException {
+        final File sourceDir = new File(tmpDir, "sources");
+        final File outputDir = new File(tmpDir, "output");
+        assertTrue(sourceDir.mkdir());
+        assertTrue(outputDir.mkdir());
+        Files.copy(Path.of("src/test/resources/exampleWithTestDir.sarif"), sourceDir.toPath().resolve("a.sarif"));
+        Files.copy(Path.of("src/test/resources/exampleWithTestDir.sarif"), sourceDir.toPath().resolve("a.sarif2"));
+        final LogCaptor logCaptor = LogCaptor.forClass(SarifToolCLI.class);
+
+        int exitCode = new CommandLine(new SarifToolCLI()).execute("convert", "-s=" + sourceDir,
+                "-o=" + outputDir, "--include-glob=**.sarif*");
+
+        assertEquals(0, exitCode);
+        assertEquals(1, logCaptor.getErrorLogs().stream().filter(log -> log.startsWith("Not converting")).count());
+        assertTrue(new File(outputDir, "a.json").isFile());
+        logCaptor.close();
+    }
+
+    @Test
+    void dedupDirectoryTest() throws Exception, IOException {
+        final File sourceDir = new File(tmpDir, "sources");
+        final File outputDir = new File(tmpDir, "output");
+        assertTrue(sourceDir.mkdir());
+        assertTrue(outputDir.mkdir());
+        Files.copy(Path.of("src/test/resources/exampleWithTestDir.sarif"), sourceDir.toPath().resolve("a.sarif"));
+        Files.copy(Path.of("src/test/resources/exampleWithTestDir.sarif"), sourceDir.toPath().resolve("b.sarif"));
+
+        int exitCode = new CommandLine(new SarifToolCLI()).execute("convert", "-s=" + sourceDir,
+                "-o=" + outputDir, "--dedup");
+
+        assertEquals(0, exitCode);
+        final int issuesA = JsonWrapper.toNode(new File(outputDir, "a.json")).get("issues").size();
+        final int issuesB = JsonWrapper.toNode(new File(outputDir, "b.json")).get("issues").size();
+        // One of the two results is in the default excluded src/test
+        assertEquals(1, issuesA + issuesB);
+    }
+
+    @Test
+    void dedupSamePartialFingerprintTest() throws Exception, IOException {
+        final File sourceDir = new File(tmpDir, "sources");
+        final File outputDir = new File(tmpDir, "output");
+        assertTrue(sourceDir.mkdir());
+        assertTrue(outputDir.mkdir());
+        // The same line of code in two modules, and one module converted twice
+        Files.writeString(sourceDir.toPath().resolve("a.sarif"), sarifWithResultIn("module1/src/Fish.java"));
+        Files.writeString(sourceDir.toPath().resolve("b.sarif"), sarifWithResultIn("module2/src/Fish.java"));
+        Files.writeString(sourceDir.toPath().resolve("c.sarif"), sarifWithResultIn("module1/src/Fish.java"));
+
+        int exitCode = new CommandLine(new SarifToolCLI()).execute("convert", "-s=" + sourceDir,
+                "-o=" + outputDir, "--dedup", "--threads=1");
+
+        assertEquals(0, exitCode);
+        // Which of a and c is converted first depends on the walk order
+        final int issuesA = JsonWrapper.toNode(new File(outputDir, "a.json")).get("issues").size();
+        final int issuesC = JsonWrapper.toNode(new File(outputDir, "c.json")).get("issues").size();
+        assertEquals(1, issuesA + issuesC);
+        assertEquals(1, JsonWrapper.toNode(new File(outputDir, "b.json")).get("issues").size());
+    }
+
+    private static String sarifWithResultIn(final String uri) {
+        return """
+                {"version": "2.1.0", "runs": [{"tool": {"driver": {"name": "CodeQL", "rules": [{"id": "java/rule"}]}},
+                  "results": [{"ruleId": "java/rule", "ruleIndex": 0, "message": {"text": "Same code"},
+                    "locations": [{"physicalLocation": {"artifactLocation": {"uri": "%s"}, "region": {"startLine": 3}}}],
+                    "partialFingerprints": {"primaryLocationLineHash": "e0946c8d7d5e9de3:1"}}]}]}
+                """.formatted(uri);
+    }
+
+    @Test
+    void mergeDirectoryTest() throws Exception, IOException {
+        final File sourceDir = new File(tmpDir, "sources");
+        final File outputDir = new File(tmpDir, "output");
+        assertTrue(sourceDir.mkdir());
+        assertTrue(outputDir.mkdir());
+        Files.copy(Path.of("src/test/resources/exampleWithTestDir.sarif"), sourceDir.toPath().resolve("a.sarif"));
+        Files.copy(Path.of("src/test/resources/multiModuleInput.sarif"), sourceDir.toPath().resolve("b.sarif"));
+
+        int exitCode = new CommandLine(new SarifToolCLI()).execute("convert", "-s=" + sourceDir,
+                "-o=" + outputDir, "--merge", "--threads=2");
+
+        assertEquals(0, exitCode);
+        assertFalse(new File(outputDir, "a.json").exists());
+        assertEquals(4, JsonWrapper.toNode(new File(outputDir, "merged.json")).get("issues").size());
+    }
+
+    @Test
+    void mergeIntoNewDirectoryTest() throws Exception, IOException {
+        final File outputDir = new File(tmpDir, "new/output");
+
+        int exitCode = new CommandLine(new SarifToolCLI()).execute("convert",
+                "-s=src/test/resources/exampleWithTestDir.sarif", "-o=" + outputDir, "--merge");
+
+        assertEquals(0, exitCode);
+        assertEquals(1, JsonWrapper.toNode(new File(outputDir, "merged.json")).get("issues").size());
+    }
+
+    @Test
+    void parsedModelCacheTest() throws Exception, IOException {
+        final File outputDir = new File(tmpDir, "output");
+        final File cacheDir = new File(tmpDir, "cache");
+        assertTrue(outputDir.mkdir());
+        final LogCaptor logCaptor = LogCaptor.forClass(SarifToolCLI.class);
+
+        int exitCode = new CommandLine(new SarifToolCLI()).execute("convert",
+                "-s=src/test/resources/multiModuleInput.sarif", "-o=" + outputDir, "-e=nothing/excluded",
+                "--cache-dir=" + cacheDir, "--cache-parsed");
+        assertEquals(0, exitCode);
+        assertTrue(logCaptor.getInfoLogs().stream().noneMatch(log -> log.startsWith("Reused cached model")));
+
+        // Other excludes, so the report is not cached, but the parsed model is
+        exitCode = new CommandLine(new SarifToolCLI()).execute("convert",
+                "-s=src/test/resources/multiModuleInput.sarif", "-o=" + outputDir, "--cache-dir=" + cacheDir,
+                "--cache-parsed");
+
+        assertEquals(0, exitCode);
+        assertTrue(logCaptor.getInfoLogs().stream().anyMatch(log -> log.startsWith("Reused cached model")));
+        assertEquals(JsonWrapper.toJson(JsonWrapper.toNode(new File("src/test/resources/multiModuleResult.json"))),
+                JsonWrapper.toJson(JsonWrapper.toNode(new File(outputDir, "multiModuleInput.json"))));
+        logCaptor.close();
+    }
+
+    @Test
+    void metricsTest() throws Exception, IOException {
+        final File outputDir = new File(tmpDir, "output");
+        assertTrue(outputDir.mkdir());
+        final File metricsFile = new File(tmpDir, "metrics.json");
+        final File prometheusFile = new File(tmpDir, "metrics.prom");
+
+        int exitCode = new CommandLine(new SarifToolCLI()).execute("convert",
+                "-s=src/test/resources/exampleWithTestDir.sarif", "-o=" + outputDir, "--metrics=" + metricsFile,
+                "--metrics-prometheus=" + prometheusFile);
+
+        assertEquals(0, exitCode);
+        final JsonNode metrics = JsonWrapper.toNode(metricsFile);
+        assertEquals(1, metrics.get("files").asInt());
+        assertEquals(2, metrics.get("results").asInt());
+        assertEquals(1, metrics.get("issues").asInt());
+        assertEquals(1, metrics.get("excluded").asInt());
+        assertEquals(new File("src/test/resources/exampleWithTestDir.sarif").length(),
+                metrics.get("bytesRead").asLong());
+        assertEquals(new File(outputDir, "exampleWithTestDir.json").length(), metrics.get("bytesWritten").asLong());
+        assertTrue(metrics.get("perFile").get(0).get("stageMs").has("validate"));
+        assertTrue(Files.readString(prometheusFile.toPath())
+                .contains("sariftool_issues{file=\"src/test/resources/exampleWithTestDir.sarif\"} 1\n"));
+    }
+
+    @Test
+    void watchTest() throws Exception, IOException {
+        final File sourceDir = new File(tmpDir, "sources");
+        final File outputDir = new File(tmpDir, "output");
+        assertTrue(sourceDir.mkdir());
+        assertTrue(outputDir.mkdir());
+        Files.copy(Path.of("src/test/resources/exampleWithTestDir.sarif"), sourceDir.toPath().resolve("a.sarif"));
+
+        final Thread watcher = new Thread(() -> new CommandLine(new SarifToolCLI()).execute("convert",
+                "-s=" + sourceDir, "-o=" + outputDir, "--watch", "--watch-quiet=100"));
+        watcher.start();
+        try {
+            awaitFile(new File(outputDir, "a.json"));
+            final Path added = sourceDir.toPath().resolve("module/b.sarif");
+            Files.createDirectories(added.getParent());
+            Files.copy(Path.of("src/test/resources/multiModuleInput.sarif"), added);
+
+            awaitFile(new File(outputDir, "module/b.json"));
+            assertEquals(JsonWrapper.toJson(JsonWrapper.toNode(new File("src/test/resources/multiModuleResult.json"))),
+                    JsonWrapper.toJson(JsonWrapper.toNode(new File(outputDir, "module/b.json"))));
+            assertFalse(new File(outputDir, "module/b.json.tmp").exists());
+        } finally {
+            watcher.interrupt();
+            watcher.join(10_000);
+        }
+        assertFalse(watcher.isAlive());
+    }
+
+    // Reports are moved into place once written, so one that exists is complete
+    private static void awaitFile(final File file) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 30_000;
+        while (!file.isFile() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(file.isFile(), file + " was not written");
+    }
+
     private void outputFileEqualsInputFile(String inputSarifFIle, String expectedResultFile)
             throws Exception, IOException {
 
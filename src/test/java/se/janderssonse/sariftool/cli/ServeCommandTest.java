@@ -0,0 +1,179 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import picocli.CommandLine;
+import se.janderssonse.sariftool.util.JsonWrapper;
+
+class ServeCommandTest {
+    @TempDir
+    File tmpDir;
+
+    private final ServeCommand serve = new ServeCommand();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private int port;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        new CommandLine(serve).parseArgs("--port=0", "--workers=2");
+        port = serve.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        serve.stop();
+    }
+
+    @Test
+    void convert_request_is_converted() throws Exception {
+        final File input = new File("src/test/resources/exampleWithTestDir.sarif").getAbsoluteFile();
+
+        final HttpResponse<String> response = post("/convert",
+                "[\"-s=" + input + "\", \"-o=" + tmpDir.getAbsolutePath() + "\"]");
+
+        assertEquals(200, response.statusCode());
+        assertEquals(0, JsonWrapper.toNode(new ByteArrayInputStream(response.body().getBytes(StandardCharsets.UTF_8)))
+                .get("exitCode").asInt());
+        assertTrue(new File(tmpDir, "exampleWithTestDir.json").isFile());
+    }
+
+    @Test
+    void failed_file_is_answered() throws Exception {
+        final File input = new File("src/test/resources/invalid.sarif").getAbsoluteFile();
+
+        final HttpResponse<String> response = post("/convert",
+                "[\"-s=" + input + "\", \"-o=" + tmpDir.getAbsolutePath() + "\"]");
+
+        assertEquals(200, response.statusCode());
+        final JsonNode answer = JsonWrapper.toNode(
+                new ByteArrayInputStream(response.body().getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, answer.get("exitCode").asInt());
+        assertEquals(input.toString(), answer.get("failed").get(0).asText());
+    }
+
+    @Test
+    void malformed_request_is_refused() throws Exception {
+        assertEquals(400, post("/convert", "{\"source\":\"a.sarif\"}").statusCode());
+        assertEquals(400, post("/convert", "[1, 2]").statusCode());
+    }
+
+    @Test
+    void request_without_token_is_refused() throws Exception {
+        final HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/convert"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("[]")).build(), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(401, response.statusCode());
+    }
+
+    @Test
+    void request_not_sent_as_json_is_refused() throws Exception {
+        final HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/convert"))
+                .header("Authorization", "Bearer " + serve.token())
+                .header("Content-Type", "text/plain")
+                .POST(HttpRequest.BodyPublishers.ofString("[]")).build(), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(415, response.statusCode());
+    }
+
+    @Test
+    void options_writing_other_files_are_refused() throws Exception {
+        final File input = new File("src/test/resources/exampleWithTestDir.sarif").getAbsoluteFile();
+        final File metrics = new File(tmpDir, "metrics.json");
+
+        assertEquals(400, post("/convert", "[\"-s=" + input + "\", \"-o=" + tmpDir + "\", \"--metrics\", \""
+                + metrics + "\"]").statusCode());
+        assertEquals(400, post("/convert", "[\"-s=" + tmpDir + "\", \"-o=" + tmpDir + "\", \"--watch\"]")
+                .statusCode());
+        assertFalse(metrics.exists());
+    }
+
+    @Test
+    void shutdown_is_only_posted() throws Exception {
+        final HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/shutdown")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(405, response.statusCode());
+        assertEquals(200, post("/shutdown", "").statusCode());
+    }
+
+    @Test
+    void shutdown_waits_for_the_running_conversion() throws Exception {
+        final int results = 3_000;
+        final Path input = largeSarif(results);
+
+        final CompletableFuture<HttpResponse<String>> converting = client.sendAsync(request("/convert",
+                "[\"-s=" + input + "\", \"-o=" + tmpDir.getAbsolutePath() + "\"]"), HttpResponse.BodyHandlers.ofString());
+        while (serve.running() == 0 && !converting.isDone()) {
+            Thread.sleep(10);
+        }
+        assertEquals(200, post("/shutdown", "").statusCode());
+        // As run() does once /shutdown is answered
+        serve.stop();
+
+        assertTrue(converting.isDone());
+        assertEquals(200, converting.get().statusCode());
+        assertEquals(results, JsonWrapper.toNode(new File(tmpDir, "large.json")).get("issues").size());
+    }
+
+    @Test
+    void health_is_answered() throws Exception {
+        final HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(uri("/health")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+    }
+
+    private HttpResponse<String> post(final String path, final String body) throws Exception {
+        return client.send(request(path, body), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest request(final String path, final String body) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Authorization", "Bearer " + serve.token())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private Path largeSarif(final int results) throws IOException {
+        final StringBuilder sarif = new StringBuilder("{\"version\":\"2.1.0\",\"runs\":[{\"tool\":{\"driver\":"
+                + "{\"name\":\"Tool\",\"rules\":[{\"id\":\"rule\"}]}},\"results\":[");
+        for (int i = 0; i < results; i++) {
+            sarif.append(i == 0 ? "" : ",").append("{\"ruleId\":\"rule\",\"message\":{\"text\":\"Result ").append(i)
+                    .append("\"},\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"src/A.java\"},")
+                    .append("\"region\":{\"startLine\":").append(i + 1).append("}}}]}");
+        }
+        final Path input = tmpDir.toPath().resolve("input").resolve("large.sarif");
+        Files.createDirectories(input.getParent());
+        return Files.writeString(input, sarif.append("]}]}"));
+    }
+
+    private URI uri(final String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
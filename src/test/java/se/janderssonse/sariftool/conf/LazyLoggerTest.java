@@ -0,0 +1,52 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.conf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Test;
+
+class LazyLoggerTest {
+
+    @Test
+    void record_has_the_caller_as_its_source() {
+        final List<LogRecord> records = new ArrayList<>();
+        final Handler handler = new Handler() {
+            @Override
+            public void publish(final LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final Logger logger = Logger.getLogger(LazyLoggerTest.class.getName());
+        logger.addHandler(handler);
+        try {
+            final LazyLogger log = LazyLogger.getLogger(LazyLoggerTest.class);
+            log.info("formatted %s", "message");
+            log.info(() -> "supplied message");
+        } finally {
+            logger.removeHandler(handler);
+        }
+
+        assertEquals(2, records.size());
+        for (LogRecord record : records) {
+            assertEquals(LazyLoggerTest.class.getName(), record.getSourceClassName());
+            assertEquals("record_has_the_caller_as_its_source", record.getSourceMethodName());
+        }
+        assertEquals("formatted message", records.get(0).getMessage());
+    }
+}
@@ -0,0 +1,66 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+
+package se.janderssonse.sariftool.mapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import se.janderssonse.sariftool.model.sarif.Result;
+import se.janderssonse.sariftool.model.sarif.Rule;
+import se.janderssonse.sariftool.model.sarif.RuleProperties;
+import se.janderssonse.sariftool.model.sonar.Issue;
+
+class RuleIndexTest {
+
+    private final RuleIndex ruleIndex = new RuleIndex(List.of(
+            createRule("java/no-severity", Optional.empty(), Optional.empty()),
+            createRule("java/error-high", Optional.of(RuleProperties.Severity.error), Optional.of("high")),
+            createRule("java/warning-medium", Optional.of(RuleProperties.Severity.warning),
+                    Optional.of("medium"))));
+
+    @Test
+    void severity_is_found_by_rule_id() {
+        assertEquals(Issue.Severity.CRITICAL, ruleIndex.severity(createResult("java/error-high", null)).get());
+        assertEquals(Issue.Severity.MINOR, ruleIndex.severity(createResult("java/warning-medium", null)).get());
+        assertEquals(Issue.Severity.INFO, ruleIndex.severity(createResult("java/no-severity", null)).get());
+    }
+
+    @Test
+    void severity_is_found_by_rule_index() {
+        assertEquals(Issue.Severity.MINOR, ruleIndex.severity(createResult(null, 2)).get());
+        assertEquals("java/warning-medium", ruleIndex.ruleId(createResult(null, 2)).get());
+    }
+
+    @Test
+    void mismatching_rule_index_falls_back_to_rule_id() {
+        assertEquals(Issue.Severity.CRITICAL, ruleIndex.severity(createResult("java/error-high", 2)).get());
+        assertEquals(Issue.Severity.CRITICAL, ruleIndex.severity(createResult("java/error-high", 99)).get());
+    }
+
+    @Test
+    void unknown_rule_is_info() {
+        assertEquals(Issue.Severity.INFO, ruleIndex.severity(createResult("java/unknown", null)).get());
+        assertTrue(ruleIndex.rule(createResult("java/unknown", null)).isEmpty());
+        assertTrue(ruleIndex.ruleId(createResult(null, null)).isEmpty());
+    }
+
+    private static Rule createRule(final String id, final Optional<RuleProperties.Severity> severity,
+            final Optional<String> precision) {
+        return new Rule(Optional.of(id), Optional.of(id), Optional.empty(), Optional.empty(),
+                Optional.of(Rule.Level.NOTE),
+                Optional.of(new RuleProperties(Optional.of(id), Optional.empty(), Optional.empty(),
+                        Optional.empty(), Optional.empty(), precision, severity)));
+    }
+
+    private static Result createResult(final String ruleId, final Integer ruleIndex) {
+        return new Result(Optional.ofNullable(ruleId), Optional.ofNullable(ruleIndex), Optional.of("message"),
+                Optional.of(List.of()));
+    }
+}
@@ -5,21 +5,26 @@
 package se.janderssonse.sariftool.mapper;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import nl.altindag.log.LogCaptor;
 import se.janderssonse.sariftool.SarifParser;
+import se.janderssonse.sariftool.model.sonar.Issue;
+import se.janderssonse.sariftool.util.OutputFormat;
 import se.janderssonse.sariftool.util.Util;
 
 class SonarMapperTest {
@@ -84,6 +89,26 @@ class SonarMapperTest {
         assertEquals(eString.replaceAll("\\s+", ""), tmpF.replaceAll("\\s+", ""));
     }
 
+    @Test
+    void when_compact_gzip_format_given_output_is_compressed() throws URISyntaxException, IOException {
+
+        final Path sarifFile = Paths.get(ClassLoader.getSystemResource("sonarmapperinput.sarif").toURI());
+        final Path target = Paths.get(tmpDir.toString(), "sonarmapperinput.json.gz");
+        SonarMapper mapper = new SonarMapper(new SarifParser(sarifFile));
+
+        mapper.map(target, List.of(), new OutputFormat(false, true));
+
+        final Path expectedSonarJson = Paths.get(ClassLoader.getSystemResource("sonarmapperoutput.json").toURI());
+        String eString = Files.readString(expectedSonarJson);
+        String tmpF;
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(target))) {
+            tmpF = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        assertFalse(tmpF.contains("\n"));
+        assertEquals(eString.replaceAll("\\s+", ""), tmpF.replaceAll("\\s+", ""));
+    }
+
     @Test
     void when_valid_sariffile_with_filter_it_is_mapped_correctly() throws URISyntaxException {
 
@@ -116,6 +141,40 @@ class SonarMapperTest {
         assertEquals(10, parser.getRules().size());
     }
 
+    @Test
+    void when_multiple_runs_given_rules_resolve_per_run_and_duplicates_are_dropped() throws URISyntaxException {
+
+        final Path sarifFile = Paths.get(ClassLoader.getSystemResource("multiRunInput.sarif").toURI());
+        SarifParser parser = new SarifParser(sarifFile);
+        SonarMapper mapper = new SonarMapper(parser);
+
+        final List<Issue> issues = mapper.toIssues(List.of()).toList();
+
+        assertEquals(3, issues.size());
+        assertEquals("java/sql-injection", issues.get(0).ruleId().get());
+        assertEquals(Issue.Severity.CRITICAL, issues.get(0).severity().get());
+        assertEquals("java/unused-local", issues.get(1).ruleId().get());
+        assertEquals(Issue.Severity.MINOR, issues.get(1).severity().get());
+        assertEquals("java/unused-local", issues.get(2).ruleId().get());
+        assertEquals(Issue.Severity.MINOR, issues.get(2).severity().get());
+        assertEquals("src/main/java/Service.java", issues.get(2).primaryLocation().get().filePath());
+    }
+
+    @Test
+    void when_single_run_repeats_a_result_it_is_kept() throws Exception {
+
+        final Path sarifFile = Paths.get(ClassLoader.getSystemResource("repeatedResultInput.sarif").toURI());
+        SarifParser parser = new SarifParser(sarifFile);
+        SonarMapper mapper = new SonarMapper(parser);
+
+        assertEquals(2, mapper.toIssues(List.of()).toList().size());
+
+        mapper.map(targetPath(sarifFile), List.of());
+
+        assertTrue(logCaptor.getInfoLogs()
+                .contains("Wrote file: target '" + targetPath(sarifFile) + "', issues '2', excluded paths: ''"));
+    }
+
     private Path targetPath(final Path sarifFile) {
         return Paths.get(tmpDir.toString(), Util.removeFileExtension(sarifFile, true).concat(".json"));
     }
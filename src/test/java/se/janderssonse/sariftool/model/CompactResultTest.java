@@ -0,0 +1,60 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import se.janderssonse.sariftool.model.sarif.CompactResult;
+import se.janderssonse.sariftool.model.sarif.Location;
+import se.janderssonse.sariftool.model.sarif.Region;
+import se.janderssonse.sariftool.model.sarif.Result;
+
+public class CompactResultTest {
+
+    @Test
+    public void compact_result_is_viewed_as_record() {
+
+        final CompactResult compact = CompactResult.builder(2)
+                .ruleId("java/rule")
+                .ruleIndex(3)
+                .message("A message")
+                .location("src/A.java", "%SRCROOT%", 0, 10, 12, 5, CompactResult.NONE)
+                .location("src/B.java", null, CompactResult.NONE, CompactResult.NONE, CompactResult.NONE,
+                        CompactResult.NONE, CompactResult.NONE)
+                .build();
+
+        final Result expected = new Result(Optional.of("java/rule"), Optional.of(3), Optional.of("A message"),
+                Optional.of(List.of(
+                        new Location("src/A.java", Optional.of("%SRCROOT%"), Optional.of(0),
+                                Optional.of(new Region(10, Optional.of(12), Optional.of(5), Optional.empty()))),
+                        new Location("src/B.java", Optional.empty(), Optional.empty(), Optional.empty()))));
+
+        assertEquals(2, compact.locationCount());
+        assertEquals(expected, compact.toResult());
+        assertEquals(List.of(expected), CompactResult.asResults(List.of(compact)));
+    }
+
+    @Test
+    public void missing_values_are_empty() {
+
+        final Result result = CompactResult.builder(0).build().toResult();
+
+        assertTrue(result.ruleId().isEmpty());
+        assertTrue(result.ruleIndex().isEmpty());
+        assertTrue(result.message().isEmpty());
+        assertTrue(result.locations().get().isEmpty());
+    }
+
+    @Test
+    public void all_locations_must_be_given() {
+        assertThrows(IllegalStateException.class, () -> CompactResult.builder(1).build());
+    }
+}
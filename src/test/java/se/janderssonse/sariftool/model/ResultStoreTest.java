@@ -0,0 +1,76 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import se.janderssonse.sariftool.model.sarif.CompactResult;
+import se.janderssonse.sariftool.model.sarif.ResultCursor;
+import se.janderssonse.sariftool.model.sarif.ResultStore;
+
+public class ResultStoreTest {
+
+    @Test
+    public void stored_results_read_back_as_added() {
+
+        final List<CompactResult> added = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final CompactResult.Builder builder = CompactResult.builder(i % 3)
+                    .ruleId(i % 5 == 0 ? null : "java/rule" + i % 4)
+                    .ruleIndex(i % 4)
+                    .toolComponent(i % 7 == 0 ? 1 : CompactResult.NONE)
+                    .message("Message " + i % 10)
+                    .fingerprint(i);
+            for (int location = 0; location < i % 3; location++) {
+                builder.location(new String("src/A" + location + ".java"), location == 0 ? null : "%SRCROOT%",
+                        location, i + 1, CompactResult.NONE, location + 1, CompactResult.NONE);
+            }
+            added.add(builder.build());
+        }
+
+        final ResultStore store = new ResultStore();
+        added.forEach(store::add);
+        store.seal();
+
+        assertEquals(100, store.size());
+        // 4 rule ids, 10 messages, 2 uris and a uriBaseId
+        assertEquals(17, store.dictionarySize());
+        final ResultCursor cursor = store.cursor();
+        for (int i = 0; i < added.size(); i++) {
+            assertEquals(added.get(i).toResult(), store.get(i).toResult());
+            assertEquals(added.get(i).fingerprint(), store.get(i).fingerprint());
+            assertEquals(added.get(i).toolComponent(), store.get(i).toolComponent());
+
+            cursor.next();
+            assertEquals(added.get(i).ruleId(), cursor.ruleId());
+            assertEquals(added.get(i).message(), cursor.message());
+            assertEquals(added.get(i).locationCount(), cursor.locationCount());
+            for (int location = 0; location < cursor.locationCount(); location++) {
+                assertEquals(added.get(i).uri(location), cursor.uri(location));
+                assertEquals(added.get(i).startLine(location), cursor.startLine(location));
+                assertEquals(added.get(i).startColumn(location), cursor.startColumn(location));
+            }
+        }
+        assertFalse(cursor.next());
+        assertNull(store.get(0).ruleId());
+        assertSame(store.get(1).uri(0), store.get(4).uri(0));
+    }
+
+    @Test
+    public void sealed_store_is_not_added_to() {
+        final ResultStore store = new ResultStore().seal();
+
+        assertFalse(store.cursor().next());
+        assertThrows(IllegalStateException.class, () -> store.add(CompactResult.builder(0).build()));
+    }
+}
@@ -0,0 +1,64 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ConversionCacheTest {
+    @TempDir
+    Path tmpDir;
+
+    @Test
+    void key_depends_on_content_and_settings() throws IOException {
+        final ConversionCache cache = new ConversionCache(tmpDir.resolve("cache"), 1024);
+        final Path a = Files.writeString(tmpDir.resolve("a.sarif"), "{\"a\":1}");
+        final Path b = Files.writeString(tmpDir.resolve("b.sarif"), "{\"a\":1}");
+        final Path c = Files.writeString(tmpDir.resolve("c.sarif"), "{\"a\":2}");
+
+        assertEquals(cache.key(a, "sonar", "src/test"), cache.key(b, "sonar", "src/test"));
+        assertNotEquals(cache.key(a, "sonar", "src/test"), cache.key(c, "sonar", "src/test"));
+        assertNotEquals(cache.key(a, "sonar", "src/test"), cache.key(a, "sonar", "src/main"));
+    }
+
+    @Test
+    void stored_output_is_restored() throws IOException {
+        final ConversionCache cache = new ConversionCache(tmpDir.resolve("cache"), 1024);
+        final Path output = Files.writeString(tmpDir.resolve("out.json"), "{\"issues\":[]}");
+        final Path restored = tmpDir.resolve("restored.json");
+
+        assertFalse(cache.restore("key", restored));
+        cache.store("key", output);
+
+        assertTrue(cache.restore("key", restored));
+        assertEquals("{\"issues\":[]}", Files.readString(restored));
+    }
+
+    @Test
+    void least_recently_used_entry_is_evicted() throws IOException {
+        final Path cacheDir = tmpDir.resolve("cache");
+        final ConversionCache cache = new ConversionCache(cacheDir, 25);
+        final Path output = Files.writeString(tmpDir.resolve("out.json"), "0123456789");
+
+        cache.store("first", output);
+        cache.store("second", output);
+        Files.setLastModifiedTime(cacheDir.resolve("first.cached"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(cacheDir.resolve("second.cached"), FileTime.fromMillis(2000));
+        cache.store("third", output);
+
+        assertFalse(cache.restore("first", tmpDir.resolve("r1.json")));
+        assertTrue(cache.restore("second", tmpDir.resolve("r2.json")));
+        assertTrue(cache.restore("third", tmpDir.resolve("r3.json")));
+    }
+}
@@ -0,0 +1,49 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+class ConversionMetricsTest {
+
+    @Test
+    void file_converted_again_replaces_its_metrics() {
+        final ConversionMetrics metrics = new ConversionMetrics();
+        final Path file = Path.of("sources/a.sarif");
+        for (int issues = 1; issues <= 3; issues++) {
+            final FileMetrics fileMetrics = metrics.start(file);
+            for (int i = 0; i < issues; i++) {
+                fileMetrics.addIssue();
+            }
+            metrics.finish(fileMetrics);
+        }
+        metrics.finish(metrics.start(Path.of("sources/b.sarif")));
+
+        final ConversionMetrics.Summary summary = metrics.summary();
+        assertEquals(2, summary.files());
+        assertEquals(3, summary.issues());
+        assertEquals(2, summary.perFile().size());
+
+        final String prometheus = metrics.toPrometheus();
+        assertEquals(1, prometheus.lines().filter(line -> line.startsWith("sariftool_issues{file=\"sources/a.sarif\"}"))
+                .count());
+        assertEquals(1, prometheus.lines()
+                .filter(line -> line.startsWith("sariftool_stage_seconds{file=\"sources/a.sarif\",stage=\"map\"}"))
+                .count());
+    }
+
+    @Test
+    void merged_report_bytes_are_replaced() {
+        final ConversionMetrics metrics = new ConversionMetrics();
+
+        metrics.setReportBytes(100);
+        metrics.setReportBytes(40);
+
+        assertEquals(40, metrics.summary().bytesWritten());
+    }
+}
@@ -0,0 +1,65 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileDiscoveryTest {
+
+    @TempDir
+    Path tmpDir;
+
+    @BeforeEach
+    void createTree() throws IOException {
+        for (String file : List.of("a.sarif", "notes.txt", "module/b.sarif", "module/build/c.sarif",
+                "module/deep/er/d.sarif", "node_modules/e.sarif")) {
+            final Path path = tmpDir.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, "{}");
+        }
+    }
+
+    @Test
+    void sarif_files_are_found_by_default() throws IOException {
+        assertEquals(List.of("a.sarif", "module/b.sarif", "module/build/c.sarif", "module/deep/er/d.sarif",
+                "node_modules/e.sarif"), find(new FileDiscovery(List.of(), List.of(), FileDiscovery.UNLIMITED_DEPTH)));
+    }
+
+    @Test
+    void excluded_dirs_and_files_are_skipped() throws IOException {
+        assertEquals(List.of("a.sarif", "module/deep/er/d.sarif"), find(new FileDiscovery(List.of(),
+                List.of("node_modules", "**/build", "module/b.sarif"), FileDiscovery.UNLIMITED_DEPTH)));
+    }
+
+    @Test
+    void includes_and_max_depth_limit_the_files() throws IOException {
+        assertEquals(List.of("a.sarif"), find(new FileDiscovery(List.of(), List.of(), 1)));
+        assertEquals(List.of("module/b.sarif", "module/build/c.sarif"),
+                find(new FileDiscovery(List.of("module/**.sarif"), List.of(), 3)));
+        assertEquals(List.of("notes.txt"), find(new FileDiscovery(List.of("*.txt"), List.of(), 2)));
+    }
+
+    @Test
+    void max_depth_below_one_is_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new FileDiscovery(List.of(), List.of(), 0));
+    }
+
+    private List<String> find(final FileDiscovery discovery) throws IOException {
+        final List<String> found = new ArrayList<>();
+        final long count = discovery.discover(tmpDir, file -> found.add(tmpDir.relativize(file).toString()));
+        assertEquals(found.size(), count);
+        return found.stream().sorted().toList();
+    }
+}
@@ -0,0 +1,41 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileInputTest {
+    @TempDir
+    Path tmpDir;
+
+    @Test
+    void mapped_and_streamed_input_are_equal() throws IOException {
+        final Path file = Files.writeString(tmpDir.resolve("input.json"), "{\"text\":\"Åäö – ≠\"}",
+                StandardCharsets.UTF_8);
+
+        try (InputStream streamed = FileInput.open(file, Long.MAX_VALUE);
+                InputStream mapped = FileInput.open(file, 0)) {
+            assertArrayEquals(streamed.readAllBytes(), mapped.readAllBytes());
+        }
+    }
+
+    @Test
+    void large_file_is_mapped_and_decoded_as_utf8() throws IOException {
+        final String text = "Åäö – ≠".repeat((int) FileInput.MAP_THRESHOLD / 8);
+        final Path file = Files.writeString(tmpDir.resolve("input.json"), "{\"text\":\"" + text + "\"}",
+                StandardCharsets.UTF_8);
+
+        assertEquals(text, JsonWrapper.toNode(file).get("text").asText());
+    }
+}
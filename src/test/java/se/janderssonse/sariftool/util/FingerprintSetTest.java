@@ -0,0 +1,50 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class FingerprintSetTest {
+
+    @Test
+    void fingerprint_is_added_once() {
+        final FingerprintSet set = new FingerprintSet();
+
+        assertTrue(set.add(42L));
+        assertFalse(set.add(42L));
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0L));
+        assertEquals(2, set.size());
+    }
+
+    @Test
+    void fingerprints_are_kept_when_growing() {
+        final FingerprintSet set = new FingerprintSet();
+        long hash = Hash64.SEED;
+        for (int i = 0; i < 100_000; i++) {
+            hash = Hash64.hash(hash, i);
+            assertTrue(set.add(hash));
+        }
+
+        assertEquals(100_000, set.size());
+        hash = Hash64.SEED;
+        for (int i = 0; i < 100_000; i++) {
+            hash = Hash64.hash(hash, i);
+            assertTrue(set.contains(hash));
+        }
+        assertFalse(set.contains(Hash64.hash(hash, "not added")));
+    }
+
+    @Test
+    void hash_separates_concatenations() {
+        final long ab = Hash64.hash(Hash64.hash(Hash64.SEED, "a"), "bc");
+        final long abc = Hash64.hash(Hash64.hash(Hash64.SEED, "ab"), "c");
+
+        assertFalse(ab == abc);
+    }
+}
@@ -0,0 +1,107 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+class JsonWrapperTest {
+
+    @TempDir
+    Path tmpDir;
+
+    @Test
+    void files_are_read_concurrently() throws Exception {
+        final File input = new File("src/test/resources/exampleWithTestDir.sarif");
+        final String expected = JsonWrapper.toJson(JsonWrapper.toNode(input));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                results.add(executor.submit(() -> {
+                    final JsonNode node = JsonWrapper.toNode(input);
+                    return JsonWrapper.toJson(node);
+                }));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void large_collections_are_not_formatted_at_info_level() throws Exception {
+        final Logger logger = Logger.getLogger(JsonWrapper.class.getName());
+        final Level level = logger.getLevel();
+        final Report report = new Report(IntStream.range(0, 100_000).boxed().toList(), new AtomicInteger());
+        try {
+            logger.setLevel(Level.INFO);
+            JsonWrapper.toFile(tmpDir.resolve("info.json"), report);
+            assertEquals(0, report.toStrings().get());
+
+            logger.setLevel(Level.FINE);
+            JsonWrapper.toFile(tmpDir.resolve("fine.json"), report);
+            assertEquals(1, report.toStrings().get());
+        } finally {
+            logger.setLevel(level);
+        }
+        assertEquals(Files.readString(tmpDir.resolve("info.json")), Files.readString(tmpDir.resolve("fine.json")));
+    }
+
+    @Test
+    void value_of_a_node_is_a_view_of_the_tree() throws Exception {
+        final JsonNode node = JsonWrapper.toNode(new File("src/test/resources/exampleWithTestDir.sarif"));
+
+        final Object value = JsonWrapper.toValue(node);
+
+        assertEquals(new ObjectMapper().convertValue(node, Map.class), value);
+        ((ObjectNode) node).put("version", "2.2.0");
+        assertEquals("2.2.0", ((Map<?, ?>) value).get("version"));
+    }
+
+    @Test
+    void schema_is_validated_from_the_tree() throws Exception {
+        final Path valid = Path.of("src/test/resources/exampleWithTestDir.sarif");
+        final Path invalid = Path.of("src/test/resources/invalid.sarif");
+
+        assertTrue(Util.schemaValidate(JsonWrapper.toNode(valid), valid));
+        final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> Util.schemaValidate(JsonWrapper.toNode(invalid), invalid));
+        assertTrue(e.getMessage().contains("Instance does not have required property"));
+    }
+
+    record Report(List<Integer> values, @JsonIgnore AtomicInteger toStrings) {
+        @Override
+        public String toString() {
+            toStrings.incrementAndGet();
+            return "Report " + values;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PathFilterTest {
+
+    @Test
+    void no_patterns_excludes_nothing() {
+        final PathFilter filter = PathFilter.of(List.of());
+
+        assertTrue(filter.isEmpty());
+        assertFalse(filter.excludes("src/test/java/A.java"));
+    }
+
+    @Test
+    void plain_pattern_matches_anywhere_ignoring_case() {
+        final PathFilter filter = PathFilter.of(List.of("src/test", "generated"));
+
+        assertTrue(filter.excludes("module/src/test/java/A.java"));
+        assertTrue(filter.excludes("SRC/TEST/A.java"));
+        assertTrue(filter.excludes("target/Generated/B.java"));
+        assertFalse(filter.excludes("src/main/java/A.java"));
+    }
+
+    @Test
+    void glob_pattern_matches_whole_path() {
+        final PathFilter filter = PathFilter.of(List.of("glob:**/test/**", "glob:*.{js,ts}"));
+
+        assertTrue(filter.excludes("src/test/java/A.java"));
+        assertTrue(filter.excludes("app.js"));
+        assertTrue(filter.excludes("app.TS"));
+        assertFalse(filter.excludes("web/app.js"));
+        assertFalse(filter.excludes("src/main/java/A.java"));
+    }
+
+    @Test
+    void backreferences_refer_to_the_groups_of_their_own_pattern() {
+        final PathFilter filter = PathFilter.of(List.of("regex:^(\\w+)/\\1/", "regex:_(\\d)_\\1\\."));
+
+        assertTrue(filter.excludes("lib/lib/A.java"));
+        assertTrue(filter.excludes("src/A_1_1.java"));
+        assertFalse(filter.excludes("src/A_1_2.java"));
+    }
+
+    @Test
+    void inline_flags_apply_to_their_own_pattern() {
+        final PathFilter filter = PathFilter.of(List.of("regex:(?x) build/  # build output", "generated"));
+
+        assertTrue(filter.excludes("build/A.java"));
+        assertTrue(filter.excludes("GENERATED/A.java"));
+        assertFalse(filter.excludes("src/A.java"));
+    }
+
+    @Test
+    void glob_is_translated_to_regex() {
+        assertEquals("(?:.*/)?test/[^/]*\\.java", PathFilter.globToRegex("**/test/*.java"));
+        assertEquals("[^a][^/][^/]", PathFilter.globToRegex("[!a]??"));
+        assertEquals("(?:a|b)\\(c\\)", PathFilter.globToRegex("{a,b}(c)"));
+    }
+}
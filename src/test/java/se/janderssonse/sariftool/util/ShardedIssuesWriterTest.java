@@ -0,0 +1,93 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import se.janderssonse.sariftool.model.sonar.Issue;
+import se.janderssonse.sariftool.model.sonar.SonarLocation;
+
+class ShardedIssuesWriterTest {
+    @TempDir
+    Path tmpDir;
+
+    @Test
+    void without_shard_size_one_report_is_written() throws IOException {
+        try (ShardedIssuesWriter writer = new ShardedIssuesWriter(tmpDir, "merged", OutputFormat.DEFAULT, 0)) {
+            for (int i = 0; i < 100; i++) {
+                writer.write(createIssue(i));
+            }
+        }
+
+        assertEquals(100, JsonWrapper.toNode(tmpDir.resolve("merged.json")).get("issues").size());
+    }
+
+    @Test
+    void with_shard_size_issues_are_split_over_reports() throws IOException {
+        final ShardedIssuesWriter writer = new ShardedIssuesWriter(tmpDir, "merged", OutputFormat.DEFAULT, 4096);
+        try (writer) {
+            for (int i = 0; i < 100; i++) {
+                writer.write(createIssue(i));
+            }
+        }
+
+        assertTrue(writer.shards().size() > 1);
+        int issues = 0;
+        for (Path shard : writer.shards()) {
+            assertTrue(shard.getFileName().toString().matches("merged-\\d+\\.json"));
+            issues += JsonWrapper.toNode(shard).get("issues").size();
+        }
+        assertEquals(100, issues);
+        assertEquals(100, writer.count());
+    }
+
+    @Test
+    void shards_of_an_earlier_larger_report_are_removed() throws IOException {
+        try (ShardedIssuesWriter writer = new ShardedIssuesWriter(tmpDir, "merged", OutputFormat.DEFAULT, 4096)) {
+            for (int i = 0; i < 100; i++) {
+                writer.write(createIssue(i));
+            }
+        }
+        final Path other = Files.writeString(tmpDir.resolve("merged-report.json"), "{}");
+
+        final ShardedIssuesWriter writer = new ShardedIssuesWriter(tmpDir, "merged", OutputFormat.DEFAULT, 4096);
+        try (writer) {
+            writer.write(createIssue(0));
+        }
+
+        try (Stream<Path> files = Files.list(tmpDir)) {
+            assertEquals(Set.of(tmpDir.resolve("merged-1.json"), other), files.collect(Collectors.toSet()));
+        }
+        assertEquals(List.of(tmpDir.resolve("merged-1.json")), writer.shards());
+    }
+
+    @Test
+    void without_issues_an_empty_report_is_written() throws IOException {
+        try (ShardedIssuesWriter writer = new ShardedIssuesWriter(tmpDir, "merged", OutputFormat.DEFAULT, 0)) {
+            assertEquals(0, writer.count());
+        }
+
+        assertEquals(0, JsonWrapper.toNode(tmpDir.resolve("merged.json")).get("issues").size());
+    }
+
+    private static Issue createIssue(final int line) {
+        return new Issue(Optional.of("engine"), Optional.of("rule"), Optional.of(Issue.Severity.INFO),
+                Optional.of(Issue.Type.CODE_SMELL),
+                Optional.of(new SonarLocation("message " + line, "src/main/java/A.java", null)),
+                Optional.empty(), Optional.of(0));
+    }
+}
@@ -0,0 +1,61 @@
+// SPDX-FileCopyrightText: 2022 Josef Andersson
+//
+// SPDX-License-Identifier: Apache-2.0
+package se.janderssonse.sariftool.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import se.janderssonse.sariftool.model.sarif.CompactResult;
+
+class SpillBufferTest {
+
+    @TempDir
+    Path tmpDir;
+
+    @Test
+    void results_beyond_the_budget_are_spilled_and_read_back_in_order() throws IOException {
+        final List<CompactResult> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            expected.add(CompactResult.builder(2)
+                    .ruleId("rule" + i % 7)
+                    .ruleIndex(i % 7)
+                    .message(i % 3 == 0 ? null : "message " + i)
+                    .fingerprint(Hash64.hash(Hash64.SEED, i))
+                    .location("src/Main" + i + ".java", null, CompactResult.NONE, i + 1, i + 2, 1,
+                            CompactResult.NONE)
+                    .location("src/Other.java", "SRCROOT", 0, CompactResult.NONE, CompactResult.NONE,
+                            CompactResult.NONE, CompactResult.NONE)
+                    .build());
+        }
+        final long budget = expected.subList(0, 100).stream().mapToLong(CompactResultCodec.INSTANCE::weigh).sum();
+
+        try (SpillBuffer<CompactResult> buffer = new SpillBuffer<>(CompactResultCodec.INSTANCE, budget, tmpDir)) {
+            expected.forEach(buffer::add);
+
+            assertEquals(1000, buffer.size());
+            assertEquals(900, buffer.spilledCount());
+            // Read twice, each iteration reads the spill file from the start
+            for (int pass = 0; pass < 2; pass++) {
+                final List<CompactResult> read = new ArrayList<>();
+                buffer.forEach(read::add);
+                assertEquals(expected.stream().map(CompactResult::toResult).toList(),
+                        read.stream().map(CompactResult::toResult).toList());
+            }
+            assertEquals(expected.get(500).toResult(), buffer.get(500).toResult());
+        }
+
+        try (Stream<Path> files = Files.list(tmpDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+}